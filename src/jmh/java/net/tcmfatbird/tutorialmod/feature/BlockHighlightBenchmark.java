@@ -0,0 +1,81 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockHighlightBenchmark {
+
+    // Chance that a section holds a vein: rare ore vs. something common
+    @Param({"0.02", "0.3"})
+    public float veinChance;
+
+    private SyntheticBlockView world;
+    private BlockPos origin;
+    private Block target;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Emerald ore stands in for the target, mod blocks can't be registered outside the game
+        world = new SyntheticBlockView(5, Blocks.EMERALD_ORE.getDefaultState(), veinChance, 42L);
+        target = Blocks.EMERALD_ORE;
+        origin = new BlockPos(3, 12, 5);
+    }
+
+    @Benchmark
+    public BlockPos findNearestBlock() {
+        return BlockHighlightTracker.findNearestBlock(world, origin, target);
+    }
+
+    @Benchmark
+    public List<BlockPos> findNearestBlocks() {
+        return BlockHighlightTracker.findNearestBlocks(world, origin, target);
+    }
+
+    // A copy of the full cube scan findNearestBlock used to do, kept as a baseline.
+    // The mod no longer runs it, so this measures the old approach and never changes with it
+    @Benchmark
+    public BlockPos cubeScanBaseline() {
+        int radius = BlockHighlightTracker.SEARCH_RADIUS;
+        BlockPos closest = null;
+        double closestDist = Double.MAX_VALUE;
+
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                for (int z = -radius; z <= radius; z++) {
+                    BlockPos check = origin.add(x, y, z);
+                    if (world.getBlockState(check).getBlock() == target) {
+                        double dist = check.getSquaredDistance(origin);
+                        if (dist > 0 && dist < closestDist) {
+                            closestDist = dist;
+                            closest = check;
+                        }
+                    }
+                }
+            }
+        }
+
+        return closest;
+    }
+}
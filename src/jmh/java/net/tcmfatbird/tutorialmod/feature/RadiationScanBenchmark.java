@@ -0,0 +1,124 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.tcmfatbird.tutorialmod.util.BlockSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-player work UraniumRadiationHandler does each tick: the exposure check,
+ * the Geiger level and the nearest-ore distance.
+ * <p>
+ * cubeScanBaseline measures a copy of the cube scans the handler ran before the ore index
+ * replaced them. Those scans no longer exist in the mod, so the copy is frozen as the old
+ * approach and doesn't follow changes to the handler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RadiationScanBenchmark {
+
+    @Param({"0.05", "0.5"})
+    public float veinChance;
+
+    private SyntheticBlockView world;
+    private UraniumOreIndex index;
+    private BlockState ore;
+    private BlockPos origin;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Emerald ore stands in for uranium, mod blocks can't be registered outside the game
+        ore = Blocks.EMERALD_ORE.getDefaultState();
+        world = new SyntheticBlockView(2, ore, veinChance, 7L);
+        RadiationSources.apply(List.of(new RadiationSources.Source(List.of(Blocks.EMERALD_ORE), 1.0f, 10)));
+
+        index = new UraniumOreIndex();
+        world.getOres().forEach(pos -> index.add(pos, 1.0f, 10));
+
+        // Stand a few blocks away from an ore so every query has something to find
+        origin = world.getOres().isEmpty() ? BlockPos.ORIGIN : world.getOres().get(0).add(3, 1, -2);
+    }
+
+    @Benchmark
+    public void indexedQueries(Blackhole blackhole) {
+        blackhole.consume(index.hasOreWithin(origin, 3));
+        blackhole.consume(index.hasOreWithin(origin, 4));
+        blackhole.consume(index.hasOreWithin(origin, 10));
+        blackhole.consume(index.nearestDistance(origin, 10));
+    }
+
+    @Benchmark
+    public float intensity() {
+        return index.intensityAt(origin, 10);
+    }
+
+    // A copy of the three cube scans the handler used to run, see the class comment
+    @Benchmark
+    public void cubeScanBaseline(Blackhole blackhole) {
+        blackhole.consume(scanForOre(3));
+        blackhole.consume(scanForOre(4));
+        blackhole.consume(scanForOre(10));
+        blackhole.consume(scanNearest(10));
+    }
+
+    // What building the index costs for every section of the fixture
+    @Benchmark
+    public int indexBuild() {
+        int[] found = {0};
+        for (PalettedContainer<BlockState> section : world.getSections()) {
+            BlockSearch.forEachMatchInSection(section, RadiationSources::isSource, (x, y, z, state) -> found[0]++);
+        }
+        return found[0];
+    }
+
+    private boolean scanForOre(int radius) {
+        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                for (int z = -radius; z <= radius; z++) {
+                    mutablePos.set(origin.getX() + x, origin.getY() + y, origin.getZ() + z);
+                    if (world.getBlockState(mutablePos) == ore) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int scanNearest(int radius) {
+        int nearest = Integer.MAX_VALUE;
+        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                for (int z = -radius; z <= radius; z++) {
+                    mutablePos.set(origin.getX() + x, origin.getY() + y, origin.getZ() + z);
+                    if (world.getBlockState(mutablePos) == ore) {
+                        int dist = (int) Math.sqrt(mutablePos.getSquaredDistance(origin));
+                        if (dist < nearest) nearest = dist;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,126 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.registry.Bootstrap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.tcmfatbird.tutorialmod.util.BlockSearch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory stand-in for a world, so the block searches can be benchmarked without a server.
+ * Everything below y=64 is stone (deepslate below y=0) with small ore veins scattered
+ * through it, everything above is air.
+ */
+public class SyntheticBlockView implements BlockView, BlockSearch.SectionSource {
+    public static final int BOTTOM_Y = -64;
+    public static final int HEIGHT = 384;
+
+    // Sections from y=64 upwards are left out, i.e. air
+    private static final int SURFACE_SECTION_Y = 4;
+
+    private static boolean bootstrapped = false;
+
+    private final Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+    private final List<BlockPos> ores = new ArrayList<>();
+
+    /**
+     * @param chunkRadius chunks to fill in every direction around chunk 0,0
+     * @param veinChance  chance (0-1) that a section gets an ore vein
+     */
+    public SyntheticBlockView(int chunkRadius, BlockState ore, float veinChance, long seed) {
+        bootstrap();
+        Random random = new Random(seed);
+
+        for (int sectionX = -chunkRadius; sectionX <= chunkRadius; sectionX++) {
+            for (int sectionZ = -chunkRadius; sectionZ <= chunkRadius; sectionZ++) {
+                for (int sectionY = BOTTOM_Y >> 4; sectionY < SURFACE_SECTION_Y; sectionY++) {
+                    BlockState fill = sectionY < 0 ? Blocks.DEEPSLATE.getDefaultState() : Blocks.STONE.getDefaultState();
+                    PalettedContainer<BlockState> section = new PalettedContainer<>(
+                            Block.STATE_IDS, fill, PalettedContainer.PaletteProvider.BLOCK_STATE);
+
+                    if (random.nextFloat() < veinChance) {
+                        placeVein(section, sectionX, sectionY, sectionZ, ore, random);
+                    }
+                    sections.put(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ), section);
+                }
+            }
+        }
+    }
+
+    // Registries have to be set up before any BlockState can be used outside the game
+    public static synchronized void bootstrap() {
+        if (bootstrapped) return;
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        bootstrapped = true;
+    }
+
+    private void placeVein(PalettedContainer<BlockState> section, int sectionX, int sectionY, int sectionZ,
+                           BlockState ore, Random random) {
+        int x = 1 + random.nextInt(14);
+        int y = 1 + random.nextInt(14);
+        int z = 1 + random.nextInt(14);
+
+        for (int i = 0; i < 5; i++) {
+            int veinX = x + random.nextInt(3) - 1;
+            int veinY = y + random.nextInt(3) - 1;
+            int veinZ = z + random.nextInt(3) - 1;
+            if (section.get(veinX, veinY, veinZ) == ore) continue;
+
+            section.swap(veinX, veinY, veinZ, ore);
+            ores.add(new BlockPos((sectionX << 4) + veinX, (sectionY << 4) + veinY, (sectionZ << 4) + veinZ));
+        }
+    }
+
+    public List<BlockPos> getOres() {
+        return ores;
+    }
+
+    public Collection<PalettedContainer<BlockState>> getSections() {
+        return sections.values();
+    }
+
+    @Override
+    public PalettedContainer<BlockState> getSection(int sectionX, int sectionY, int sectionZ) {
+        return sections.get(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+    }
+
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        PalettedContainer<BlockState> section = sections.get(ChunkSectionPos.toLong(pos));
+        return section == null ? Blocks.AIR.getDefaultState() : section.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public int getHeight() {
+        return HEIGHT;
+    }
+
+    @Override
+    public int getBottomY() {
+        return BOTTOM_Y;
+    }
+}
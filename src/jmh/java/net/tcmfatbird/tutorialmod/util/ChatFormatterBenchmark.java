@@ -0,0 +1,58 @@
+package net.tcmfatbird.tutorialmod.util;
+
+import net.minecraft.text.MutableText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatFormatterBenchmark {
+
+    @Param({"plain", "colors", "gradient", "pathological"})
+    public String input;
+
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        message = switch (input) {
+            case "plain" -> "Has anyone seen my diamond pickaxe? I left it next to the furnace in the main base.";
+            case "colors" -> "&cRed &aGreen &9Blue &lbold&r &#FF8800orange &oitalic&r **bold** and *italic* &kmagic&r done";
+            case "gradient" -> "&gradient{FF0000-0000FF}Fatbird_The_Great&r: &gradient{00FF00-FFFF00}anyone up for the uranium facility?";
+            case "pathological" -> pathological();
+            default -> throw new IllegalArgumentException(input);
+        };
+    }
+
+    // Unbalanced markdown, broken hex codes and gradients back to back, 256 characters
+    private static String pathological() {
+        StringBuilder builder = new StringBuilder();
+        String[] pieces = {"***", "&#GGGGGG", "&gradient{FFFFFF-000000}*", "&", "**x", "&#12345", "&k&l&m&n&o"};
+        for (int i = 0; builder.length() < 256; i++) {
+            builder.append(pieces[i % pieces.length]);
+        }
+        builder.setLength(256);
+        return builder.toString();
+    }
+
+    @Benchmark
+    public MutableText parse() {
+        return ChatFormatter.parse(message, true);
+    }
+}
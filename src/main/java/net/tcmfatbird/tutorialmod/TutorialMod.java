@@ -19,10 +19,10 @@ import net.tcmfatbird.tutorialmod.item.custom.XpOrbSphereItem;
 import net.tcmfatbird.tutorialmod.network.*;
 import net.tcmfatbird.tutorialmod.item.ModItemGroups;
 import net.tcmfatbird.tutorialmod.item.ModItems;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
 import net.tcmfatbird.tutorialmod.util.ChatFormatter;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
-import net.minecraft.util.math.BlockPos;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import net.tcmfatbird.tutorialmod.world.ModOreGeneration;
@@ -41,8 +41,9 @@ public class TutorialMod implements ModInitializer {
         MutationEnchantment.register();
         PayloadTypeRegistry.playC2S().register(SetTimePacket.ID, SetTimePacket.CODEC);
         PayloadTypeRegistry.playC2S().register(TemporalRewindTogglePacket.ID, TemporalRewindTogglePacket.CODEC);
-        PayloadTypeRegistry.playS2C().register(RadiationLevelPacket.ID, RadiationLevelPacket.CODEC);
-        PayloadTypeRegistry.playS2C().register(NearestUraniumPacket.ID, NearestUraniumPacket.CODEC);
+        PayloadTypeRegistry.playS2C().register(GeigerStatePacket.ID, GeigerStatePacket.CODEC);
+        PayloadTypeRegistry.playS2C().register(GeigerPredictionPacket.ID, GeigerPredictionPacket.CODEC);
+        PayloadTypeRegistry.playS2C().register(RadiationSourcesPacket.ID, RadiationSourcesPacket.CODEC);
         PayloadTypeRegistry.playS2C().register(TemporalRewindStatePacket.ID, TemporalRewindStatePacket.CODEC);
 
         ServerPlayNetworking.registerGlobalReceiver(SetTimePacket.ID, (payload, context) -> {
@@ -68,7 +69,10 @@ public class TutorialMod implements ModInitializer {
         ModItems.registerModItems();
         ModBlocks.registerModBlocks();
         ModOreGeneration.register();
+        // Before anything that keeps an index from block changes, so changes are flushed first
+        BlockChangeTracker.register();
         UraniumRadiationHandler.register();
+        BlockHighlightTracker.register();
         CustomCommands.register();
 
         FuelRegistry.INSTANCE.add(ModItems.STARLIGHT_ASHES, 600);
@@ -88,10 +92,7 @@ public class TutorialMod implements ModInitializer {
             }
 
             // --- BLOCK HIGHLIGHT CHECK ---
-            BlockPos highlighted = BlockHighlightTracker.onChat(sender, content);
-            if (highlighted != null) {
-                ServerPlayNetworking.send(sender, new BlockHighlightPacket(highlighted));
-            }
+            BlockHighlightTracker.onChat(sender, content);
 
             // --- CHAT FORMATTING ---
             MutableText formatted = ChatFormatter.parseForPlayer(content, sender);
@@ -10,12 +10,14 @@ import net.minecraft.util.Formatting;
 import net.tcmfatbird.tutorialmod.feature.BlockHighlightRenderer;
 import net.tcmfatbird.tutorialmod.feature.GeigerCounterClient;
 import net.tcmfatbird.tutorialmod.feature.GeigerHud;
+import net.tcmfatbird.tutorialmod.feature.RadiationSources;
 import net.tcmfatbird.tutorialmod.gui.ClockScreen;
 import net.tcmfatbird.tutorialmod.item.ModItems;
 import net.tcmfatbird.tutorialmod.network.BlockHighlightPacket;
 import net.tcmfatbird.tutorialmod.network.ClockTogglePacket;
-import net.tcmfatbird.tutorialmod.network.NearestUraniumPacket;
-import net.tcmfatbird.tutorialmod.network.RadiationLevelPacket;
+import net.tcmfatbird.tutorialmod.network.GeigerPredictionPacket;
+import net.tcmfatbird.tutorialmod.network.GeigerStatePacket;
+import net.tcmfatbird.tutorialmod.network.RadiationSourcesPacket;
 import net.tcmfatbird.tutorialmod.network.TemporalRewindStatePacket;
 import net.tcmfatbird.tutorialmod.network.TemporalRewindTogglePacket;
 import org.lwjgl.glfw.GLFW;
@@ -31,10 +33,24 @@ public class TutorialModClient implements ClientModInitializer {
     @Override
     public void onInitializeClient() {
         GeigerHud.register();
+        GeigerCounterClient.register();
 
-        ClientPlayNetworking.registerGlobalReceiver(NearestUraniumPacket.ID, (payload, context) -> {
+        ClientPlayNetworking.registerGlobalReceiver(GeigerStatePacket.ID, (payload, context) -> {
             context.client().execute(() -> {
-                GeigerCounterClient.setNearestDistance(payload.distance());
+                GeigerCounterClient.setState(payload.level(), payload.distance(), payload.intensity());
+            });
+        });
+
+        ClientPlayNetworking.registerGlobalReceiver(RadiationSourcesPacket.ID, (payload, context) -> {
+            context.client().execute(() -> {
+                RadiationSources.apply(payload.sources());
+                GeigerCounterClient.rebuildIndex();
+            });
+        });
+
+        ClientPlayNetworking.registerGlobalReceiver(GeigerPredictionPacket.ID, (payload, context) -> {
+            context.client().execute(() -> {
+                GeigerCounterClient.setPredicting(payload.enabled());
             });
         });
 
@@ -51,12 +67,6 @@ public class TutorialModClient implements ClientModInitializer {
                 "key.category.tutorialmod"
         ));
 
-        ClientPlayNetworking.registerGlobalReceiver(RadiationLevelPacket.ID, (payload, context) -> {
-            context.client().execute(() -> {
-                GeigerCounterClient.setRadiationLevel(payload.level());
-            });
-        });
-
         // --- REGISTER C2S PACKET ---
         //PayloadTypeRegistry.playC2S().register(SetTimePacket.ID, SetTimePacket.CODEC);
 
@@ -65,10 +75,15 @@ public class TutorialModClient implements ClientModInitializer {
 
         ClientPlayNetworking.registerGlobalReceiver(BlockHighlightPacket.ID, (payload, context) -> {
             context.client().execute(() -> {
-                if (payload.pos() != null) {
-                    BlockHighlightRenderer.setHighlight(payload.pos());
-                } else {
-                    BlockHighlightRenderer.highlightedBlock = null;
+                BlockHighlightRenderer.setHighlights(payload.positions());
+
+                // The server only searched chunks that were already loaded
+                if (payload.partial() && context.client().player != null) {
+                    context.client().player.sendMessage(
+                            Text.literal("Search only covered loaded chunks, closer blocks may exist.")
+                                    .formatted(Formatting.GRAY),
+                            true
+                    );
                 }
             });
         });
@@ -97,7 +112,7 @@ public class TutorialModClient implements ClientModInitializer {
                 }
             }
 
-            BlockHighlightRenderer.tick();
+            BlockHighlightRenderer.tick(client);
 
             // Open clock GUI on keypress
             while (clockGuiKey.wasPressed()) {
@@ -2,19 +2,26 @@ package net.tcmfatbird.tutorialmod.command;
 
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.sound.SoundEvents;
 import net.minecraft.text.Text;
 import net.minecraft.entity.effect.StatusEffectInstance;
 import net.minecraft.entity.effect.StatusEffects;
+import net.tcmfatbird.tutorialmod.feature.BlockLocatorIndex;
 import net.tcmfatbird.tutorialmod.feature.ChatMentions;
+import net.tcmfatbird.tutorialmod.feature.RadiationScheduler;
+import net.tcmfatbird.tutorialmod.feature.RadiationShielding;
 import net.tcmfatbird.tutorialmod.network.ClockTogglePacket;
+import net.tcmfatbird.tutorialmod.network.GeigerPredictionPacket;
 
 import java.util.Map;
 import java.util.UUID;
@@ -29,6 +36,8 @@ public class CustomCommands {
     private static final Map<UUID, Boolean> mentionsEnabled = new ConcurrentHashMap<>();
     // Tracks per-player clock toggle state (default: on)
     private static final Map<UUID, Boolean> clockEnabled = new ConcurrentHashMap<>();
+    // Tracks per-player Geiger prediction state (default: off)
+    private static final Map<UUID, Boolean> geigerPrediction = new ConcurrentHashMap<>();
 
     public static void register() {
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
@@ -37,10 +46,20 @@ public class CustomCommands {
             registerBoostCommand(dispatcher);
             registerMentionCommand(dispatcher);
             registerClockCommand(dispatcher);
+            registerRadiationCommand(dispatcher);
+            registerGeigerCommand(dispatcher);
+            registerLocatorCommand(dispatcher);
+        });
+
+        // A reconnecting client starts with prediction off, so tell it again
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            if (isGeigerPredictionEnabledFor(handler.getPlayer())) {
+                ServerPlayNetworking.send(handler.getPlayer(), new GeigerPredictionPacket(true));
+            }
         });
     }
 
-    // ─── PUBLIC HELPERS (used by ChatMentions) ───────────────────────────────
+    // ─── PUBLIC HELPERS (used by ChatMentions and UraniumRadiationHandler) ────
 
     public static boolean areMentionsEnabledFor(ServerPlayerEntity player) {
         return mentionsEnabled.getOrDefault(player.getUuid(), true);
@@ -50,6 +69,10 @@ public class CustomCommands {
         return clockEnabled.getOrDefault(player.getUuid(), true);
     }
 
+    public static boolean isGeigerPredictionEnabledFor(ServerPlayerEntity player) {
+        return geigerPrediction.getOrDefault(player.getUuid(), false);
+    }
+
     // ─── /mention on|off ──────────────────────────────────────────────────────
 
     private static void registerMentionCommand(CommandDispatcher<ServerCommandSource> dispatcher) {
@@ -96,6 +119,101 @@ public class CustomCommands {
         }
     }
 
+    // ─── /geiger predict on|off ──────────────────────────────────────────────
+
+    private static void registerGeigerCommand(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("geiger")
+                .then(CommandManager.literal("predict")
+                        .then(CommandManager.literal("on").executes(ctx -> setGeigerPrediction(ctx, true)))
+                        .then(CommandManager.literal("off").executes(ctx -> setGeigerPrediction(ctx, false)))));
+    }
+
+    private static int setGeigerPrediction(CommandContext<ServerCommandSource> context, boolean enabled) {
+        try {
+            ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+            geigerPrediction.put(player.getUuid(), enabled);
+
+            // The client computes readings from its own chunks while this is on
+            ServerPlayNetworking.send(player, new GeigerPredictionPacket(enabled));
+
+            context.getSource().sendFeedback(
+                    () -> Text.literal("Geiger prediction " + (enabled ? "enabled" : "disabled") + "."), false);
+            return 1;
+        } catch (Exception e) {
+            context.getSource().sendError(Text.literal("Only players can use this command!"));
+            return 0;
+        }
+    }
+
+    // ─── /radiation budget [nanos] | rays [count] ────────────────────────────
+
+    private static void registerRadiationCommand(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("radiation")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("budget")
+                        .executes(CustomCommands::executeRadiationBudgetQuery)
+                        .then(CommandManager.argument("nanos", LongArgumentType.longArg(0, 50_000_000L))
+                                .executes(CustomCommands::executeRadiationBudgetSet)))
+                .then(CommandManager.literal("rays")
+                        .executes(CustomCommands::executeRadiationRaysQuery)
+                        .then(CommandManager.argument("count", IntegerArgumentType.integer(0, 65536))
+                                .executes(CustomCommands::executeRadiationRaysSet))));
+    }
+
+    private static int executeRadiationBudgetQuery(CommandContext<ServerCommandSource> context) {
+        long budget = RadiationScheduler.getBudgetNanos();
+        context.getSource().sendFeedback(
+                () -> Text.literal("Radiation budget: " + budget + " ns per tick."), false);
+        return 1;
+    }
+
+    private static int executeRadiationBudgetSet(CommandContext<ServerCommandSource> context) {
+        long budget = LongArgumentType.getLong(context, "nanos");
+        RadiationScheduler.setBudgetNanos(budget);
+        context.getSource().sendFeedback(
+                () -> Text.literal("Radiation budget set to " + budget + " ns per tick."), true);
+        return 1;
+    }
+
+    private static int executeRadiationRaysQuery(CommandContext<ServerCommandSource> context) {
+        int rays = RadiationShielding.getMaxRaysPerTick();
+        context.getSource().sendFeedback(
+                () -> Text.literal("Radiation shielding: up to " + rays + " rays per world per tick."), false);
+        return 1;
+    }
+
+    private static int executeRadiationRaysSet(CommandContext<ServerCommandSource> context) {
+        int rays = IntegerArgumentType.getInteger(context, "count");
+        RadiationShielding.setMaxRaysPerTick(rays);
+        context.getSource().sendFeedback(
+                () -> Text.literal("Radiation shielding set to " + rays + " rays per world per tick."), true);
+        return 1;
+    }
+
+    // ─── /locator stats ──────────────────────────────────────────────────────
+
+    private static void registerLocatorCommand(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("locator")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("stats")
+                        .executes(CustomCommands::executeLocatorStats)));
+    }
+
+    private static int executeLocatorStats(CommandContext<ServerCommandSource> context) {
+        for (ServerWorld world : context.getSource().getServer().getWorlds()) {
+            BlockLocatorIndex index = BlockLocatorIndex.getIfPresent(world);
+            if (index == null) continue;
+
+            BlockLocatorIndex.Stats stats = index.getStats();
+            context.getSource().sendFeedback(() -> Text.literal(world.getRegistryKey().getValue()
+                    + ": " + stats.trackedTypes() + " block types, " + stats.positions() + " blocks in "
+                    + stats.sections() + " sections, " + stats.loadedChunks() + " loaded and "
+                    + stats.unloadedChunks() + " unloaded chunks, " + stats.skippedChunks()
+                    + " loaded chunks skipped for the memory budget, ~" + (stats.bytes() / 1024) + " KiB"), false);
+        }
+        return 1;
+    }
+
     // ─── /hello ───────────────────────────────────────────────────────────────
 
     private static void registerHelloCommand(CommandDispatcher<ServerCommandSource> dispatcher) {
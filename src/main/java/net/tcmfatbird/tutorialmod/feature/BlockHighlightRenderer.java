@@ -1,20 +1,37 @@
 package net.tcmfatbird.tutorialmod.feature;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.VertexBuffer;
 import net.minecraft.client.render.*;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Vec3d;
 import org.joml.Matrix4f;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class BlockHighlightRenderer {
 
-    public static volatile BlockPos highlightedBlock = null;
+    public static volatile List<BlockPos> highlightedBlocks = List.of();
 
     private static final int HIGHLIGHT_DURATION_TICKS = 60;
     private static int remainingTicks = 0;
 
+    // Uploaded boxes, rebuilt on the render thread only when the highlighted set changes
+    private static final List<Cluster> clusters = new ArrayList<>();
+    private static volatile boolean dirty = false;
+    private static final Matrix4f clusterMatrix = new Matrix4f();
+    // The world the highlight belongs to, it's dropped when the player leaves it
+    private static ClientWorld highlightWorld = null;
+
     private static final float R = 0.0f;
     private static final float G = 1.0f;
     private static final float B = 0.5f;
@@ -27,30 +44,107 @@ public class BlockHighlightRenderer {
         WorldRenderEvents.AFTER_ENTITIES.register(BlockHighlightRenderer::render);
     }
 
-    public static void tick() {
-        if (highlightedBlock != null) {
+    public static void tick(MinecraftClient client) {
+        // Disconnecting or changing dimension frees the uploaded buffers right away
+        if (client.world != highlightWorld) {
+            highlightWorld = client.world;
+            highlightedBlocks = List.of();
+            dirty = false;
+            release();
+            return;
+        }
+
+        if (!highlightedBlocks.isEmpty()) {
             remainingTicks--;
             if (remainingTicks <= 0) {
-                highlightedBlock = null;
+                highlightedBlocks = List.of();
+                dirty = true;
             }
         }
     }
 
-    public static void setHighlight(BlockPos pos) {
-        highlightedBlock = pos;
+    public static void setHighlights(List<BlockPos> positions) {
+        highlightedBlocks = List.copyOf(positions);
         remainingTicks = HIGHLIGHT_DURATION_TICKS;
+        dirty = true;
     }
 
     // BEFORE_ENTITIES signature is just (WorldRenderContext) -> void
     private static void render(WorldRenderContext context) {
-        if (highlightedBlock == null) return;
+        if (dirty) {
+            dirty = false;
+            rebuild(highlightedBlocks);
+        }
+        if (clusters.isEmpty()) return;
 
         Vec3d cameraPos = context.camera().getPos();
         Matrix4f matrix = context.matrixStack().peek().getPositionMatrix();
+        Frustum frustum = context.frustum();
+
+        RenderSystem.disableDepthTest();
+        RenderSystem.enableBlend();
+        RenderSystem.lineWidth(LINE_WIDTH);
+
+        for (Cluster cluster : clusters) {
+            if (frustum != null && !frustum.isVisible(cluster.bounds)) continue;
+
+            // Vertices are relative to the cluster's section, so only the translation changes per frame.
+            // The draw replaces the shader's model-view matrix, so RenderSystem's goes in here
+            clusterMatrix.set(RenderSystem.getModelViewMatrix()).mul(matrix).translate(
+                    (float) (cluster.originX - cameraPos.getX()),
+                    (float) (cluster.originY - cameraPos.getY()),
+                    (float) (cluster.originZ - cameraPos.getZ()));
+            cluster.buffer.bind();
+            cluster.buffer.draw(clusterMatrix, RenderSystem.getProjectionMatrix(), GameRenderer.getPositionColorProgram());
+        }
+        VertexBuffer.unbind();
 
-        float minX = highlightedBlock.getX() - (float) cameraPos.getX();
-        float minY = highlightedBlock.getY() - (float) cameraPos.getY();
-        float minZ = highlightedBlock.getZ() - (float) cameraPos.getZ();
+        RenderSystem.enableDepthTest();
+        RenderSystem.disableBlend();
+        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+    }
+
+    // Uploads one static buffer per chunk section holding highlighted blocks, replacing the old ones
+    private static void rebuild(List<BlockPos> blocks) {
+        release();
+        if (blocks.isEmpty()) return;
+
+        Long2ObjectLinkedOpenHashMap<List<BlockPos>> bySection = new Long2ObjectLinkedOpenHashMap<>();
+        for (BlockPos pos : blocks) {
+            bySection.computeIfAbsent(ChunkSectionPos.toLong(pos), k -> new ArrayList<>()).add(pos);
+        }
+
+        Tessellator tessellator = Tessellator.getInstance();
+        for (Long2ObjectMap.Entry<List<BlockPos>> entry : bySection.long2ObjectEntrySet()) {
+            long section = entry.getLongKey();
+            int originX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(section));
+            int originY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(section));
+            int originZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(section));
+
+            BufferBuilder builder = tessellator.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
+            Box bounds = null;
+            for (BlockPos pos : entry.getValue()) {
+                box(builder, pos.getX() - originX, pos.getY() - originY, pos.getZ() - originZ);
+                Box block = new Box(pos);
+                bounds = bounds == null ? block : bounds.union(block);
+            }
+
+            VertexBuffer buffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+            buffer.bind();
+            buffer.upload(builder.end());
+            VertexBuffer.unbind();
+            clusters.add(new Cluster(buffer, bounds, originX, originY, originZ));
+        }
+    }
+
+    private static void release() {
+        for (Cluster cluster : clusters) {
+            cluster.buffer.close();
+        }
+        clusters.clear();
+    }
+
+    private static void box(BufferBuilder buffer, float minX, float minY, float minZ) {
         float maxX = minX + 1.0f;
         float maxY = minY + 1.0f;
         float maxZ = minZ + 1.0f;
@@ -59,41 +153,30 @@ public class BlockHighlightRenderer {
         minX -= pad; minY -= pad; minZ -= pad;
         maxX += pad; maxY += pad; maxZ += pad;
 
-        Tessellator tessellator = Tessellator.getInstance();
-        BufferBuilder buffer = tessellator.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
-
-        RenderSystem.disableDepthTest();
-        RenderSystem.enableBlend();
-        RenderSystem.setShader(GameRenderer::getPositionColorProgram);
-        RenderSystem.lineWidth(LINE_WIDTH);
-
         // Bottom face
-        line(buffer, matrix, minX, minY, minZ, maxX, minY, minZ);
-        line(buffer, matrix, maxX, minY, minZ, maxX, minY, maxZ);
-        line(buffer, matrix, maxX, minY, maxZ, minX, minY, maxZ);
-        line(buffer, matrix, minX, minY, maxZ, minX, minY, minZ);
+        line(buffer, minX, minY, minZ, maxX, minY, minZ);
+        line(buffer, maxX, minY, minZ, maxX, minY, maxZ);
+        line(buffer, maxX, minY, maxZ, minX, minY, maxZ);
+        line(buffer, minX, minY, maxZ, minX, minY, minZ);
         // Top face
-        line(buffer, matrix, minX, maxY, minZ, maxX, maxY, minZ);
-        line(buffer, matrix, maxX, maxY, minZ, maxX, maxY, maxZ);
-        line(buffer, matrix, maxX, maxY, maxZ, minX, maxY, maxZ);
-        line(buffer, matrix, minX, maxY, maxZ, minX, maxY, minZ);
+        line(buffer, minX, maxY, minZ, maxX, maxY, minZ);
+        line(buffer, maxX, maxY, minZ, maxX, maxY, maxZ);
+        line(buffer, maxX, maxY, maxZ, minX, maxY, maxZ);
+        line(buffer, minX, maxY, maxZ, minX, maxY, minZ);
         // Vertical edges
-        line(buffer, matrix, minX, minY, minZ, minX, maxY, minZ);
-        line(buffer, matrix, maxX, minY, minZ, maxX, maxY, minZ);
-        line(buffer, matrix, maxX, minY, maxZ, maxX, maxY, maxZ);
-        line(buffer, matrix, minX, minY, maxZ, minX, maxY, maxZ);
-
-        BufferRenderer.drawWithGlobalProgram(buffer.end());
-
-        RenderSystem.enableDepthTest();
-        RenderSystem.disableBlend();
-        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+        line(buffer, minX, minY, minZ, minX, maxY, minZ);
+        line(buffer, maxX, minY, minZ, maxX, maxY, minZ);
+        line(buffer, maxX, minY, maxZ, maxX, maxY, maxZ);
+        line(buffer, minX, minY, maxZ, minX, maxY, maxZ);
     }
 
-    private static void line(BufferBuilder buffer, Matrix4f matrix,
+    private static void line(BufferBuilder buffer,
                              float x1, float y1, float z1,
                              float x2, float y2, float z2) {
-        buffer.vertex(matrix, x1, y1, z1).color(R, G, B, A);
-        buffer.vertex(matrix, x2, y2, z2).color(R, G, B, A);
+        buffer.vertex(x1, y1, z1).color(R, G, B, A);
+        buffer.vertex(x2, y2, z2).color(R, G, B, A);
+    }
+
+    private record Cluster(VertexBuffer buffer, Box bounds, int originX, int originY, int originZ) {
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,32 @@
 package net.tcmfatbird.tutorialmod.feature;
 
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.block.Block;
-import net.minecraft.item.ItemStack;
+import net.minecraft.item.BlockItem;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.BlockView;
+import net.minecraft.world.World;
+import net.tcmfatbird.tutorialmod.TutorialMod;
+import net.tcmfatbird.tutorialmod.network.BlockHighlightPacket;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
+import net.tcmfatbird.tutorialmod.util.BlockSearch;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class BlockHighlightTracker {
 
@@ -19,117 +35,200 @@ public class BlockHighlightTracker {
 
     // How far (in blocks) to search for the nearest matching block
     public static final int SEARCH_RADIUS = 64;
+    // Blocks the locator index tracks are cheap to find much further out
+    public static final int LOCATOR_SEARCH_RADIUS = 256;
 
-    // Stores recent messages per player for tracking repeats
-    private static final Map<UUID, List<String>> recentMessages = new ConcurrentHashMap<>();
+    // How many messages in a row each player has named the block they're holding
+    private static final Map<UUID, Repeats> repeats = new ConcurrentHashMap<>();
 
-    // Currently highlighted block per player (so we can clear it)
-    private static final Map<UUID, BlockPos> highlightedBlocks = new ConcurrentHashMap<>();
-
-    /**
-     * Call this from the chat event. Returns the BlockPos to highlight, or null.
-     */
-    public static BlockPos onChat(ServerPlayerEntity player, String message) {
-        UUID uuid = player.getUuid();
-        recentMessages.computeIfAbsent(uuid, k -> new ArrayList<>());
-        List<String> history = recentMessages.get(uuid);
-
-        // Get what block the player is holding
-        ItemStack held = player.getMainHandStack();
-        if (held.isEmpty()) {
-            history.clear();
-            return null;
-        }
+    private static final class Repeats {
+        int blockId = -1;
+        int count = 0;
+    }
 
-        // Get the block's display name, uppercase for comparison
-        String blockName = held.getItem().getName().getString().toUpperCase();
+    // How many of the nearest matching blocks one search highlights, enough for a whole vein
+    public static final int HIGHLIGHT_COUNT = 32;
 
-        // Normalize the message: trim and uppercase
-        String normalized = message.trim().toUpperCase();
+    // As long as the client shows a highlight, BlockHighlightRenderer keeps the same count
+    private static final int HIGHLIGHT_DURATION_TICKS = 60;
 
-        // Check if this message is the block name
-        if (!normalized.equals(blockName)) {
-            history.clear();
-            return null;
-        }
+    // Currently highlighted blocks per player, nearest first (so we can clear them)
+    private static final Map<UUID, Highlight> highlightedBlocks = new ConcurrentHashMap<>();
 
-        history.add(normalized);
+    private record Highlight(List<BlockPos> positions, int sentTick) {
+    }
 
-        // Only keep the last REQUIRED_REPEATS messages
-        while (history.size() > REQUIRED_REPEATS) {
-            history.remove(0);
-        }
+    // Searches run here so the chat event never waits on one
+    private static final ThreadPoolExecutor SEARCH_EXECUTOR = new ThreadPoolExecutor(
+            1, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(16),
+            runnable -> {
+                Thread thread = new Thread(runnable, "TutorialMod Highlight Search");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Players with a search in flight, so spamming the trigger can't queue up work
+    private static final Set<UUID> pendingSearches = ConcurrentHashMap.newKeySet();
+
+    public static void register() {
+        BlockNameIndex.register();
+        BlockLocatorIndex.register();
+        BlockChangeTracker.addListener(BlockHighlightTracker::onBlockChanges);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> clearHighlight(handler.getPlayer()));
+    }
 
-        // Check if we have enough repeats
-        if (history.size() == REQUIRED_REPEATS) {
-            boolean allMatch = history.stream().allMatch(msg -> msg.equals(blockName));
-            history.clear(); // reset after a successful trigger
+    // A highlighted block that gets broken or replaced stops being highlighted
+    private static void onBlockChanges(World world, BlockChangeTracker.Changes changes) {
+        if (world.isClient() || highlightedBlocks.isEmpty()) return;
+
+        MinecraftServer server = world.getServer();
+        int tick = server.getTicks();
+        // The client has stopped showing these, so breaking one mustn't bring the rest back
+        highlightedBlocks.values().removeIf(highlight -> tick - highlight.sentTick() > HIGHLIGHT_DURATION_TICKS);
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (Map.Entry<UUID, Highlight> entry : highlightedBlocks.entrySet()) {
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+            if (player == null || player.getServerWorld() != world) continue;
+
+            List<BlockPos> positions = entry.getValue().positions();
+            List<BlockPos> remaining = null;
+            for (int i = 0; i < changes.size(); i++) {
+                if (changes.oldState(i).getBlock() == changes.newState(i).getBlock()) continue;
+                changes.getPos(i, pos);
+                if (!positions.contains(pos)) continue;
+
+                if (remaining == null) remaining = new ArrayList<>(positions);
+                remaining.remove(pos);
+            }
+            if (remaining == null) continue;
 
-            if (allMatch) {
-                // Find the nearest block of this type
-                BlockPos found = findNearestBlock(player);
-                highlightedBlocks.put(uuid, found); // may be null if not found
-                return found;
+            // One packet per player for the whole batch
+            if (remaining.isEmpty()) {
+                highlightedBlocks.remove(entry.getKey());
+            } else {
+                highlightedBlocks.put(entry.getKey(), new Highlight(List.copyOf(remaining), tick));
             }
+            ServerPlayNetworking.send(player, new BlockHighlightPacket(remaining, false));
         }
-
-        return null; // haven't reached 3 yet, don't send anything
     }
 
     /**
-     * Returns true if we just hit 3 repeats (even if block wasn't found).
-     * This lets us distinguish "not enough messages yet" from "triggered but no block found".
+     * Call this from the chat event. Once the player has said the block name enough
+     * times, a search is started and the BlockHighlightPacket is sent when it finishes.
      */
-    public static boolean hasTriggered(ServerPlayerEntity player, String message) {
+    public static void onChat(ServerPlayerEntity player, String message) {
         UUID uuid = player.getUuid();
-        ItemStack held = player.getMainHandStack();
-        if (held.isEmpty()) return false;
-
-        String blockName = held.getItem().getName().getString().toUpperCase();
-        String normalized = message.trim().toUpperCase();
-        if (!normalized.equals(blockName)) return false;
-
-        List<String> history = recentMessages.getOrDefault(uuid, new ArrayList<>());
-        // We already added it in onChat, so check size was exactly REQUIRED_REPEATS before clear
-        // Simpler: just check if onChat returned non-null OR if history was just cleared after match
-        // Actually let's just use a flag. We'll refactor slightly:
-        return false; // handled inline below
+        Repeats state = repeats.get(uuid);
+
+        // The message has to name the block the player is holding
+        Block named = BlockNameIndex.lookup(message);
+        if (named == null || !(player.getMainHandStack().getItem() instanceof BlockItem held)
+                || held.getBlock() != named) {
+            if (state != null) state.count = 0;
+            return;
+        }
+
+        if (state == null) {
+            state = new Repeats();
+            repeats.put(uuid, state);
+        }
+        int blockId = Registries.BLOCK.getRawId(named);
+        if (state.blockId != blockId) {
+            state.blockId = blockId;
+            state.count = 0;
+        }
+
+        if (++state.count >= REQUIRED_REPEATS) {
+            state.count = 0; // reset after a successful trigger
+            startSearch(player);
+        }
     }
 
     /**
-     * Searches in a radius around the player for the nearest block matching what they're holding.
+     * Snapshots the area around the player and searches it on a worker thread for the
+     * nearest block matching what they're holding. The result is handed back to the
+     * server thread and dropped if the player left or changed dimension meanwhile.
      */
-    private static BlockPos findNearestBlock(ServerPlayerEntity player) {
-        BlockView world = player.getWorld();
-        BlockPos playerPos = player.getBlockPos();
-        Block targetBlock = player.getMainHandStack().getItem() instanceof net.minecraft.item.BlockItem bi
+    private static void startSearch(ServerPlayerEntity player) {
+        Block targetBlock = player.getMainHandStack().getItem() instanceof BlockItem bi
                 ? bi.getBlock() : null;
 
-        if (targetBlock == null) return null;
-
-        BlockPos closest = null;
-        double closestDist = Double.MAX_VALUE;
-
-        for (int x = -SEARCH_RADIUS; x <= SEARCH_RADIUS; x++) {
-            for (int y = -SEARCH_RADIUS; y <= SEARCH_RADIUS; y++) {
-                for (int z = -SEARCH_RADIUS; z <= SEARCH_RADIUS; z++) {
-                    BlockPos check = playerPos.add(x, y, z);
-                    if (world.getBlockState(check).getBlock() == targetBlock) {
-                        double dist = check.getSquaredDistance(playerPos);
-                        if (dist > 0 && dist < closestDist) {
-                            closestDist = dist;
-                            closest = check;
-                        }
-                    }
-                }
+        if (targetBlock == null) return;
+
+        UUID uuid = player.getUuid();
+        if (!pendingSearches.add(uuid)) return;
+
+        MinecraftServer server = player.getServer();
+        ServerWorld world = player.getServerWorld();
+        RegistryKey<World> dimension = world.getRegistryKey();
+        BlockPos origin = player.getBlockPos();
+
+        // Indexed blocks are looked up right away; the index only knows chunks the server has had loaded
+        BlockLocatorIndex locator = BlockLocatorIndex.getIfPresent(world);
+        if (locator != null && BlockLocatorIndex.isTracked(targetBlock)) {
+            List<BlockPos> found = locator.findNearest(targetBlock, origin, LOCATOR_SEARCH_RADIUS, HIGHLIGHT_COUNT);
+            // With all the blocks asked for, only chunks close enough to hold a nearer one matter
+            int searched = LOCATOR_SEARCH_RADIUS;
+            if (found.size() == HIGHLIGHT_COUNT) {
+                searched = (int) Math.ceil(Math.sqrt(found.get(found.size() - 1).getSquaredDistance(origin)));
             }
+            deliverResult(server, uuid, dimension, found, !locator.covers(origin, searched));
+            return;
         }
 
-        return closest;
+        BlockSearch.Snapshot snapshot = BlockSearch.snapshot(world, origin, SEARCH_RADIUS,
+                state -> state.isOf(targetBlock));
+        boolean partial = !snapshot.isComplete();
+
+        try {
+            SEARCH_EXECUTOR.execute(() -> {
+                List<BlockPos> found = List.of();
+                try {
+                    found = findNearestBlocks(snapshot, origin, targetBlock);
+                } catch (Exception e) {
+                    TutorialMod.LOGGER.error("Block highlight search failed", e);
+                }
+
+                List<BlockPos> result = found;
+                server.execute(() -> deliverResult(server, uuid, dimension, result, partial));
+            });
+        } catch (RejectedExecutionException e) {
+            pendingSearches.remove(uuid);
+            player.sendMessage(Text.literal("§cBlock search is busy, try again in a moment."), true);
+        }
+    }
+
+    private static void deliverResult(MinecraftServer server, UUID uuid, RegistryKey<World> dimension,
+                                      List<BlockPos> found, boolean partial) {
+        pendingSearches.remove(uuid);
+
+        ServerPlayerEntity player = server.getPlayerManager().getPlayer(uuid);
+        if (player == null || player.getServerWorld().getRegistryKey() != dimension) return;
+
+        if (!found.isEmpty()) {
+            highlightedBlocks.put(uuid, new Highlight(found, server.getTicks()));
+        } else {
+            highlightedBlocks.remove(uuid);
+        }
+
+        // Nothing found in a complete search needs no packet; a partial miss is still worth reporting
+        if (!found.isEmpty() || partial) {
+            ServerPlayNetworking.send(player, new BlockHighlightPacket(found, partial));
+        }
+    }
+
+    public static BlockPos findNearestBlock(BlockSearch.SectionSource source, BlockPos playerPos, Block targetBlock) {
+        return BlockSearch.findNearest(source, playerPos, SEARCH_RADIUS, state -> state.isOf(targetBlock));
+    }
+
+    public static List<BlockPos> findNearestBlocks(BlockSearch.SectionSource source, BlockPos playerPos, Block targetBlock) {
+        return BlockSearch.findNearest(source, playerPos, SEARCH_RADIUS, state -> state.isOf(targetBlock), HIGHLIGHT_COUNT);
     }
 
     public static void clearHighlight(ServerPlayerEntity player) {
         highlightedBlocks.remove(player.getUuid());
-        recentMessages.remove(player.getUuid());
+        repeats.remove(player.getUuid());
     }
 }
\ No newline at end of file
@@ -0,0 +1,463 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import net.tcmfatbird.tutorialmod.mixin.ServerChunkLoadingManagerAccessor;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
+import net.tcmfatbird.tutorialmod.util.BlockSearch;
+import net.tcmfatbird.tutorialmod.util.ModTags;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows where every block in the tutorialmod:locator_tracked tag is, section by section, so
+ * "find the nearest X" only has to look at sections that hold an X. The tag ships empty:
+ * no index exists until a datapack adds blocks to it, and then every loaded chunk is indexed.
+ * <p>
+ * Sections of unloaded chunks are kept, since nothing can change them while they're
+ * unloaded, until the index grows past its memory budget. Then the chunks unloaded the
+ * longest ago are dropped first. Unloaded chunks without tracked blocks aren't kept at all.
+ * Loaded chunks are never dropped; once nothing unloaded is left to drop, newly loaded
+ * chunks are skipped instead, and searches near them report that they may have missed some.
+ * The budget can be overshot by the chunk that crosses it and by blocks placed afterwards.
+ */
+public class BlockLocatorIndex {
+
+    private static final Map<World, BlockLocatorIndex> INDEXES = new ConcurrentHashMap<>();
+
+    // Can be set at startup with -Dtutorialmod.locator.maxBytes=...
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+    private static final long MAX_BYTES = Long.getLong("tutorialmod.locator.maxBytes", DEFAULT_MAX_BYTES);
+
+    // Rough heap cost of one section's list on top of its positions: the object, its
+    // array header and its slot in the hash map
+    private static final int SECTION_OVERHEAD_BYTES = 64;
+    // Rough heap cost of one chunk in the unloaded chunk list: its key and links, with slack
+    private static final int UNLOADED_CHUNK_BYTES = 32;
+    // Rough heap cost of one region's bits in seenRegions, with its slot in the map
+    private static final int SEEN_REGION_BYTES = 16 * 8 + 48;
+
+    // Tracked blocks by type number, and the type number of every raw state id (-1 = not tracked)
+    private static volatile List<Block> trackedBlocks = List.of();
+    private static volatile byte[] typeOfState = new byte[0];
+
+    private final ServerWorld world;
+    // One map per tracked type: section key -> positions of that type in the section
+    private final List<Long2ObjectOpenHashMap<Positions>> sections = new ArrayList<>();
+    private final LongOpenHashSet loadedChunks = new LongOpenHashSet();
+    // Unloaded chunks still in the index, least recently used first
+    private final LongLinkedOpenHashSet unloadedChunks = new LongLinkedOpenHashSet();
+    // Loaded chunks left out because the index was over budget
+    private final LongOpenHashSet skippedChunks = new LongOpenHashSet();
+    // Which chunks the index holds everything for, loaded or not: one bit per chunk in
+    // regions of 32x32 chunks, keyed like ChunkPos
+    private final Long2ObjectOpenHashMap<long[]> seenRegions = new Long2ObjectOpenHashMap<>();
+    private long bytes = 0;
+    private long positionCount = 0;
+
+    // Packed section-local positions, (y << 8) | (z << 4) | x
+    private static final class Positions {
+        short[] positions = new short[4];
+        int size = 0;
+    }
+
+    public record Stats(int trackedTypes, int sections, long positions, int loadedChunks, int unloadedChunks,
+                        int skippedChunks, long bytes) {
+    }
+
+    private BlockLocatorIndex(ServerWorld world) {
+        this.world = world;
+        for (int i = 0; i < trackedBlocks.size(); i++) {
+            sections.add(new Long2ObjectOpenHashMap<>());
+        }
+    }
+
+    public static void register() {
+        ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            if (!trackedBlocks.isEmpty()) get(world).indexChunk(chunk);
+        });
+        ServerChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> {
+            BlockLocatorIndex index = INDEXES.get(world);
+            if (index != null) index.unloadChunk(chunk);
+        });
+        ServerWorldEvents.UNLOAD.register((server, world) -> INDEXES.remove(world));
+        BlockChangeTracker.addListener(BlockLocatorIndex::onBlockChanges);
+
+        // A different set of tracked blocks invalidates everything
+        CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> {
+            if (client) return;
+            updateTrackedBlocks();
+            INDEXES.clear();
+        });
+        // On startup chunks only load after the tags, but a reload has to pick up the loaded ones
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            if (trackedBlocks.isEmpty()) return;
+            for (ServerWorld world : server.getWorlds()) {
+                BlockLocatorIndex index = get(world);
+                for (ChunkHolder holder : ((ServerChunkLoadingManagerAccessor) world.getChunkManager().chunkLoadingManager).tutorialmod$entryIterator()) {
+                    WorldChunk chunk = holder.getWorldChunk();
+                    if (chunk != null) index.indexChunk(chunk);
+                }
+            }
+        });
+    }
+
+    public static BlockLocatorIndex get(ServerWorld world) {
+        return INDEXES.computeIfAbsent(world, w -> new BlockLocatorIndex(world));
+    }
+
+    @Nullable
+    public static BlockLocatorIndex getIfPresent(World world) {
+        return INDEXES.get(world);
+    }
+
+    public static boolean isTracked(Block block) {
+        return trackedBlocks.contains(block);
+    }
+
+    private static int typeOf(int stateId) {
+        byte[] types = typeOfState;
+        return stateId < types.length ? types[stateId] : -1;
+    }
+
+    private static int typeOf(BlockState state) {
+        return typeOf(Block.getRawIdFromState(state));
+    }
+
+    private static void updateTrackedBlocks() {
+        List<Block> blocks = new ArrayList<>();
+        for (RegistryEntry<Block> entry : Registries.BLOCK.iterateEntries(ModTags.Blocks.LOCATOR_TRACKED)) {
+            // Type numbers are stored in a byte
+            if (blocks.size() < Byte.MAX_VALUE) blocks.add(entry.value());
+        }
+
+        byte[] types = new byte[Block.STATE_IDS.size()];
+        Arrays.fill(types, (byte) -1);
+        for (int type = 0; type < blocks.size(); type++) {
+            for (BlockState state : blocks.get(type).getStateManager().getStates()) {
+                types[Block.getRawIdFromState(state)] = (byte) type;
+            }
+        }
+
+        trackedBlocks = List.copyOf(blocks);
+        typeOfState = types;
+    }
+
+    // --- CHUNK TRACKING ---
+
+    private void indexChunk(WorldChunk chunk) {
+        long chunkPos = chunk.getPos().toLong();
+        // Back before it was evicted, but it may have been changed while it was gone
+        if (unloadedChunks.remove(chunkPos)) forgetUnloaded(chunkPos);
+        // Sections are filled without looking for duplicates below, so start from nothing
+        if (!loadedChunks.add(chunkPos)) dropChunk(chunkPos);
+        if (sections.isEmpty()) return;
+
+        while (bytes > MAX_BYTES && !unloadedChunks.isEmpty()) {
+            forgetUnloaded(unloadedChunks.removeFirstLong());
+        }
+        if (bytes > MAX_BYTES) {
+            loadedChunks.remove(chunkPos);
+            skippedChunks.add(chunkPos);
+            return;
+        }
+
+        ChunkSection[] chunkSections = chunk.getSectionArray();
+        for (int i = 0; i < chunkSections.length; i++) {
+            ChunkSection section = chunkSections[i];
+            if (section.isEmpty()) continue;
+
+            PalettedContainer<BlockState> states = section.getBlockStateContainer();
+            long key = ChunkSectionPos.asLong(chunk.getPos().x, chunk.sectionIndexToCoord(i), chunk.getPos().z);
+            BlockSearch.forEachMatchInSection(states, state -> typeOf(state) >= 0, (x, y, z, state) ->
+                    append(typeOf(state), key, pack(x, y, z)));
+        }
+        setSeen(chunkPos, true);
+    }
+
+    private void unloadChunk(WorldChunk chunk) {
+        long chunkPos = chunk.getPos().toLong();
+        skippedChunks.remove(chunkPos);
+        if (!loadedChunks.remove(chunkPos)) return;
+        if (!hasPositions(chunkPos)) return;
+
+        unloadedChunks.add(chunkPos);
+        bytes += UNLOADED_CHUNK_BYTES;
+        while (bytes > MAX_BYTES && !unloadedChunks.isEmpty()) {
+            forgetUnloaded(unloadedChunks.removeFirstLong());
+        }
+    }
+
+    private void forgetUnloaded(long chunkPos) {
+        dropChunk(chunkPos);
+        setSeen(chunkPos, false);
+        bytes -= UNLOADED_CHUNK_BYTES;
+    }
+
+    private void setSeen(long chunkPos, boolean seen) {
+        int chunkX = ChunkPos.getPackedX(chunkPos);
+        int chunkZ = ChunkPos.getPackedZ(chunkPos);
+        long regionKey = ChunkPos.toLong(chunkX >> 5, chunkZ >> 5);
+        long[] bits = seenRegions.get(regionKey);
+        if (bits == null) {
+            if (!seen) return;
+            bits = new long[16];
+            seenRegions.put(regionKey, bits);
+            bytes += SEEN_REGION_BYTES;
+        }
+
+        int bit = ((chunkZ & 31) << 5) | (chunkX & 31);
+        if (seen) {
+            bits[bit >> 6] |= 1L << bit;
+        } else {
+            bits[bit >> 6] &= ~(1L << bit);
+        }
+    }
+
+    private boolean isSeen(int chunkX, int chunkZ) {
+        long[] bits = seenRegions.get(ChunkPos.toLong(chunkX >> 5, chunkZ >> 5));
+        if (bits == null) return false;
+        int bit = ((chunkZ & 31) << 5) | (chunkX & 31);
+        return (bits[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    private boolean hasPositions(long chunkPos) {
+        int chunkX = ChunkPos.getPackedX(chunkPos);
+        int chunkZ = ChunkPos.getPackedZ(chunkPos);
+        for (Long2ObjectOpenHashMap<Positions> byType : sections) {
+            for (int sectionY = world.getBottomSectionCoord(); sectionY < world.getTopSectionCoord(); sectionY++) {
+                if (byType.containsKey(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ))) return true;
+            }
+        }
+        return false;
+    }
+
+    private void dropChunk(long chunkPos) {
+        int chunkX = ChunkPos.getPackedX(chunkPos);
+        int chunkZ = ChunkPos.getPackedZ(chunkPos);
+        for (Long2ObjectOpenHashMap<Positions> byType : sections) {
+            for (int sectionY = world.getBottomSectionCoord(); sectionY < world.getTopSectionCoord(); sectionY++) {
+                Positions positions = byType.remove(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ));
+                if (positions != null) forget(positions);
+            }
+        }
+    }
+
+    private static void onBlockChanges(World world, BlockChangeTracker.Changes changes) {
+        BlockLocatorIndex index = INDEXES.get(world);
+        if (index == null) return;
+
+        for (int i = 0; i < changes.size(); i++) {
+            int oldType = typeOf(changes.oldStateId(i));
+            int newType = typeOf(changes.newStateId(i));
+            if (oldType == newType) continue;
+
+            // Chunks skipped for the budget stay out of the index entirely
+            long section = changes.sectionKey(i);
+            if (!index.skippedChunks.isEmpty() && index.skippedChunks.contains(
+                    ChunkPos.toLong(ChunkSectionPos.unpackX(section), ChunkSectionPos.unpackZ(section)))) continue;
+
+            short packed = (short) changes.localIndex(i);
+            if (oldType >= 0) index.remove(oldType, changes.sectionKey(i), packed);
+            if (newType >= 0) index.add(newType, changes.sectionKey(i), packed);
+        }
+    }
+
+    private void add(int type, long key, short packed) {
+        Positions positions = sections.get(type).get(key);
+        if (positions != null) {
+            for (int i = 0; i < positions.size; i++) {
+                if (positions.positions[i] == packed) return;
+            }
+        }
+        append(type, key, packed);
+    }
+
+    // Adds a position known not to be in the index yet, as when a chunk is first indexed
+    private void append(int type, long key, short packed) {
+        Long2ObjectOpenHashMap<Positions> byType = sections.get(type);
+        Positions positions = byType.get(key);
+        if (positions == null) {
+            positions = new Positions();
+            byType.put(key, positions);
+            bytes += SECTION_OVERHEAD_BYTES + 2L * positions.positions.length;
+        }
+
+        if (positions.size == positions.positions.length) {
+            bytes += 2L * positions.size;
+            positions.positions = Arrays.copyOf(positions.positions, positions.size * 2);
+        }
+        positions.positions[positions.size++] = packed;
+        positionCount++;
+    }
+
+    private void remove(int type, long key, short packed) {
+        Long2ObjectOpenHashMap<Positions> byType = sections.get(type);
+        Positions positions = byType.get(key);
+        if (positions == null) return;
+
+        for (int i = 0; i < positions.size; i++) {
+            if (positions.positions[i] != packed) continue;
+            positions.positions[i] = positions.positions[--positions.size];
+            positionCount--;
+            break;
+        }
+        if (positions.size == 0) {
+            byType.remove(key);
+            forget(positions);
+        }
+    }
+
+    private void forget(Positions positions) {
+        bytes -= SECTION_OVERHEAD_BYTES + 2L * positions.positions.length;
+        positionCount -= positions.size;
+    }
+
+    private static short pack(int x, int y, int z) {
+        return (short) ((y << 8) | (z << 4) | x);
+    }
+
+    // --- QUERIES ---
+
+    /**
+     * Finds the count closest blocks of a tracked type to center inside the cube of the given
+     * radius, ignoring center itself, in the same order as BlockSearch.findNearest. Only
+     * sections holding that type are looked at, nearest first. Empty for untracked blocks.
+     */
+    public List<BlockPos> findNearest(Block block, BlockPos center, int radius, int count) {
+        int type = trackedBlocks.indexOf(block);
+        if (type < 0 || type >= sections.size()) return List.of();
+        Long2ObjectOpenHashMap<Positions> byType = sections.get(type);
+        if (byType.isEmpty()) return List.of();
+
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+        int minSectionX = (cx - radius) >> 4, maxSectionX = (cx + radius) >> 4;
+        int minSectionY = (cy - radius) >> 4, maxSectionY = (cy + radius) >> 4;
+        int minSectionZ = (cz - radius) >> 4, maxSectionZ = (cz + radius) >> 4;
+        long cubeSections = (long) (maxSectionX - minSectionX + 1) * (maxSectionY - minSectionY + 1) * (maxSectionZ - minSectionZ + 1);
+
+        // Whichever is smaller: the sections that hold the type, or the sections of the cube
+        long[] keys = new long[(int) Math.min(byType.size(), cubeSections)];
+        int keyCount = 0;
+        if (byType.size() <= cubeSections) {
+            ObjectIterator<Long2ObjectMap.Entry<Positions>> it = byType.long2ObjectEntrySet().fastIterator();
+            while (it.hasNext()) {
+                long key = it.next().getLongKey();
+                int sx = ChunkSectionPos.unpackX(key), sy = ChunkSectionPos.unpackY(key), sz = ChunkSectionPos.unpackZ(key);
+                if (sx < minSectionX || sx > maxSectionX || sy < minSectionY || sy > maxSectionY
+                        || sz < minSectionZ || sz > maxSectionZ) continue;
+                keys[keyCount++] = key;
+            }
+        } else {
+            for (int sx = minSectionX; sx <= maxSectionX; sx++) {
+                for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+                    for (int sz = minSectionZ; sz <= maxSectionZ; sz++) {
+                        long key = ChunkSectionPos.asLong(sx, sy, sz);
+                        if (byType.containsKey(key)) keys[keyCount++] = key;
+                    }
+                }
+            }
+        }
+
+        // (closest possible squared distance << 32) | index into keys, sorted nearest-first
+        long[] order = new long[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            long key = keys[i];
+            int dx = axisDistance(cx, ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(key)));
+            int dy = axisDistance(cy, ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(key)));
+            int dz = axisDistance(cz, ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(key)));
+            order[i] = ((long) (dx * dx + dy * dy + dz * dz) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        BlockSearch.NearestBlocks nearest = new BlockSearch.NearestBlocks(count);
+
+        for (long entry : order) {
+            if ((int) (entry >>> 32) > nearest.worstDistance()) break;
+
+            long key = keys[(int) entry];
+            Positions positions = byType.get(key);
+            int baseX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(key));
+            int baseY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(key));
+            int baseZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(key));
+
+            for (int i = 0; i < positions.size; i++) {
+                int packed = positions.positions[i];
+                int x = baseX + (packed & 15);
+                int y = baseY + ((packed >> 8) & 15);
+                int z = baseZ + ((packed >> 4) & 15);
+                int dx = x - cx, dy = y - cy, dz = z - cz;
+                if (Math.abs(dx) > radius || Math.abs(dy) > radius || Math.abs(dz) > radius) continue;
+
+                int dist = dx * dx + dy * dy + dz * dz;
+                if (dist != 0) nearest.offer(x, y, z, dist);
+            }
+        }
+
+        List<BlockPos> found = nearest.toList();
+        // Chunks that keep getting asked about are the last to be evicted
+        for (BlockPos pos : found) {
+            long chunkPos = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+            if (unloadedChunks.contains(chunkPos)) unloadedChunks.addAndMoveToLast(chunkPos);
+        }
+        return found;
+    }
+
+    /**
+     * Whether the index has everything in the cube of the given radius around center. Chunks
+     * that were never loaded, or that were dropped or skipped for the budget, leave it incomplete.
+     */
+    public boolean covers(BlockPos center, int radius) {
+        int minChunkX = (center.getX() - radius) >> 4, maxChunkX = (center.getX() + radius) >> 4;
+        int minChunkZ = (center.getZ() - radius) >> 4, maxChunkZ = (center.getZ() + radius) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (!isSeen(chunkX, chunkZ)) return false;
+            }
+        }
+        return true;
+    }
+
+    public Stats getStats() {
+        int sectionCount = 0;
+        for (Long2ObjectOpenHashMap<Positions> byType : sections) {
+            sectionCount += byType.size();
+        }
+        return new Stats(sections.size(), sectionCount, positionCount, loadedChunks.size(), unloadedChunks.size(),
+                skippedChunks.size(), bytes);
+    }
+
+    // Distance along one axis from value to a section starting at base
+    private static int axisDistance(int value, int base) {
+        if (value < base) return base - value;
+        if (value > base + 15) return value - base - 15;
+        return 0;
+    }
+}
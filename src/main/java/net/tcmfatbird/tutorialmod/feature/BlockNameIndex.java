@@ -0,0 +1,130 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.minecraft.block.Block;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Language;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maps what a player can type in chat to the block it names: the block's and its item's
+ * display names in the server's language, and the registry id with and without namespace.
+ * Lookups ignore case and surrounding whitespace and work on the message as is, so a chat
+ * message that names nothing costs a hash and allocates nothing.
+ * <p>
+ * Built from the registries on first use and rebuilt whenever data packs reload.
+ */
+public class BlockNameIndex {
+
+    private static volatile BlockNameIndex instance = null;
+
+    // Open addressing with linear probing; keys are already case-folded
+    private final String[] keys;
+    private final Block[] blocks;
+    private final int mask;
+
+    private BlockNameIndex(int expected) {
+        int capacity = HashCommon.nextPowerOfTwo(Math.max(2, expected * 2));
+        keys = new String[capacity];
+        blocks = new Block[capacity];
+        mask = capacity - 1;
+    }
+
+    public static void register() {
+        CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> {
+            if (client) return;
+            instance = build();
+        });
+    }
+
+    /**
+     * The block the message names, or null if it names none.
+     */
+    @Nullable
+    public static Block lookup(String message) {
+        BlockNameIndex index = instance;
+        if (index == null) instance = index = build();
+
+        int start = 0;
+        int end = message.length();
+        while (start < end && message.charAt(start) <= ' ') start++;
+        while (end > start && message.charAt(end - 1) <= ' ') end--;
+        if (start == end) return null;
+
+        int slot = hash(message, start, end) & index.mask;
+        String key;
+        while ((key = index.keys[slot]) != null) {
+            if (matches(key, message, start, end)) return index.blocks[slot];
+            slot = (slot + 1) & index.mask;
+        }
+        return null;
+    }
+
+    private static BlockNameIndex build() {
+        Language language = Language.getInstance();
+        // Up to four names per block
+        BlockNameIndex index = new BlockNameIndex(Registries.BLOCK.size() * 4);
+
+        for (Block block : Registries.BLOCK) {
+            Identifier id = Registries.BLOCK.getId(block);
+            index.put(language.get(block.getTranslationKey()), block);
+
+            Item item = block.asItem();
+            if (item != Items.AIR) {
+                index.put(language.get(item.getTranslationKey()), block);
+            }
+
+            index.put(id.toString(), block);
+            index.put(id.getPath(), block);
+        }
+        return index;
+    }
+
+    // The first block to claim a name keeps it, so vanilla wins over mods reusing a name
+    private void put(String name, Block block) {
+        String key = fold(name.trim());
+        if (key.isEmpty()) return;
+
+        int slot = hash(key, 0, key.length()) & mask;
+        String existing;
+        while ((existing = keys[slot]) != null) {
+            if (existing.equals(key)) return;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        blocks[slot] = block;
+    }
+
+    private static boolean matches(String key, String message, int start, int end) {
+        if (key.length() != end - start) return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != fold(message.charAt(start + i))) return false;
+        }
+        return true;
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(s.charAt(i));
+        }
+        return HashCommon.mix(h);
+    }
+
+    private static String fold(String s) {
+        StringBuilder folded = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            folded.append(fold(s.charAt(i)));
+        }
+        return folded.toString();
+    }
+
+    // Same per-character folding String.equalsIgnoreCase uses
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
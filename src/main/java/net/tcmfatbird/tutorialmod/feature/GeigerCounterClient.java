@@ -1,17 +1,122 @@
 package net.tcmfatbird.tutorialmod.feature;
 
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.WorldChunk;
 import net.minecraft.sound.SoundEvents;
 import net.minecraft.sound.SoundCategory;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
 
 public class GeigerCounterClient {
 
     private static int radiationLevel = 0;
     private static int tickCounter = 0;
     private static int nearestDistance = Integer.MAX_VALUE;
+    private static float intensity = 0.0f;
 
-    public static void setNearestDistance(int distance) {
+    // Prediction mode: readings come from an index of the client's own chunks, and the
+    // occasional server packet corrects them
+    private static boolean predicting = false;
+    private static int serverLevel = 0;
+    private static int serverDistance = Integer.MAX_VALUE;
+    private static float serverIntensity = 0.0f;
+    private static int predictedLevel = 0;
+    private static int predictedDistance = Integer.MAX_VALUE;
+    private static float predictedIntensity = 0.0f;
+    // Set when the last correction disagreed with the prediction, the server's reading is
+    // shown instead until the next correction arrives
+    private static boolean corrected = false;
+    private static ClientWorld indexedWorld = null;
+
+    // Loaded client chunks are never further than this from the player, whatever the view distance
+    private static final int MAX_CHUNK_RADIUS = 35;
+
+    public static void register() {
+        // The client index is only kept while predicting, nothing else reads it
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            if (!predicting) return;
+            trackWorld(world);
+            UraniumOreIndex.get(world).indexChunk(chunk);
+        });
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> {
+            BlockChangeTracker.flush(world);
+            UraniumOreIndex index = UraniumOreIndex.getIfPresent(world);
+            if (index != null) index.removeChunk(chunk);
+        });
+        // Block changes in the client world keep its index and shielding cache up to date
+        ClientTickEvents.END_WORLD_TICK.register(BlockChangeTracker::flush);
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            trackWorld(null);
+            predicting = false;
+            corrected = false;
+        });
+    }
+
+    // Only the world the client is in is worth indexing, drop the old one on a dimension change
+    private static void trackWorld(ClientWorld world) {
+        if (world == indexedWorld) return;
+        if (indexedWorld != null) {
+            UraniumOreIndex.remove(indexedWorld);
+            RadiationShielding.remove(indexedWorld);
+            BlockChangeTracker.remove(indexedWorld);
+        }
+        indexedWorld = world;
+    }
+
+    // Prediction was just turned on, so the chunks the client already has need indexing
+    private static void indexLoadedChunks(MinecraftClient client) {
+        ClientWorld world = client.world;
+        if (world == null || client.player == null) return;
+        trackWorld(world);
+
+        UraniumOreIndex index = UraniumOreIndex.get(world);
+        ChunkPos center = client.player.getChunkPos();
+        for (int x = center.x - MAX_CHUNK_RADIUS; x <= center.x + MAX_CHUNK_RADIUS; x++) {
+            for (int z = center.z - MAX_CHUNK_RADIUS; z <= center.z + MAX_CHUNK_RADIUS; z++) {
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(x, z);
+                if (chunk != null) index.indexChunk(chunk);
+            }
+        }
+    }
+
+    // The server sent a new radiation source table, so the client index is out of date
+    public static void rebuildIndex() {
+        if (indexedWorld == null) return;
+        UraniumOreIndex index = UraniumOreIndex.getIfPresent(indexedWorld);
+        if (index != null) index.rebuild(indexedWorld);
+    }
+
+    public static void setPredicting(boolean enabled) {
+        if (enabled == predicting) return;
+        predicting = enabled;
+        if (enabled) {
+            indexLoadedChunks(MinecraftClient.getInstance());
+        } else {
+            trackWorld(null);
+        }
+        corrected = false;
+    }
+
+    public static void setState(int level, int distance, float newIntensity) {
+        serverLevel = level;
+        serverDistance = distance;
+        serverIntensity = newIntensity;
+
+        if (predicting) {
+            // Compared the way the server rounds, so a difference it couldn't send doesn't count
+            corrected = level != predictedLevel || distance != predictedDistance
+                    || UraniumRadiationHandler.getIntensityPercent(newIntensity)
+                    != UraniumRadiationHandler.getIntensityPercent(predictedIntensity);
+            if (!corrected) return;
+        }
+        radiationLevel = level;
         nearestDistance = distance;
+        intensity = newIntensity;
     }
 
     public static int getRadiationLevel() {
@@ -21,16 +126,18 @@ public class GeigerCounterClient {
         return nearestDistance;
     }
 
+    public static float getIntensity() {
+        return intensity;
+    }
+
     // Beep every N ticks depending on level
     private static final int[] BEEP_INTERVALS = {40, 15, 4};
 
-    public static void setRadiationLevel(int level) {
-        radiationLevel = level;
-    }
-
     public static void tick(MinecraftClient client) {
         if (client.world == null || client.player == null) return;
 
+        if (predicting) predict(client);
+
         tickCounter++;
         int interval = BEEP_INTERVALS[radiationLevel];
 
@@ -49,9 +156,40 @@ public class GeigerCounterClient {
         }
     }
 
+    private static void predict(MinecraftClient client) {
+        UraniumOreIndex index = client.world == indexedWorld ? UraniumOreIndex.getIfPresent(client.world) : null;
+        if (index == null || corrected) {
+            radiationLevel = serverLevel;
+            nearestDistance = serverDistance;
+            intensity = serverIntensity;
+            if (index == null) return;
+        }
+
+        BlockPos pos = client.player.getBlockPos();
+        int nearest = index.nearestChebyshevDistance(pos, UraniumRadiationHandler.GEIGER_RANGE);
+        predictedLevel = UraniumRadiationHandler.getGeigerLevel(nearest);
+        predictedDistance = nearest == Integer.MAX_VALUE
+                ? Integer.MAX_VALUE
+                : UraniumRadiationHandler.quantizeDistance(index.nearestDistance(pos, UraniumRadiationHandler.GEIGER_RANGE));
+        predictedIntensity = RadiationShielding.get(client.world).intensityAt(client.world, index, pos, RadiationSources.getMaxRange());
+        if (corrected) return;
+
+        radiationLevel = predictedLevel;
+        nearestDistance = predictedDistance;
+        intensity = predictedIntensity;
+    }
+
     public static void reset() {
         radiationLevel = 0;
         tickCounter = 0;
         nearestDistance = Integer.MAX_VALUE;
+        intensity = 0.0f;
+        serverLevel = 0;
+        serverDistance = Integer.MAX_VALUE;
+        serverIntensity = 0.0f;
+        predictedLevel = 0;
+        predictedDistance = Integer.MAX_VALUE;
+        predictedIntensity = 0.0f;
+        corrected = false;
     }
 }
\ No newline at end of file
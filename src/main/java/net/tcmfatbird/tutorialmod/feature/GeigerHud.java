@@ -35,9 +35,9 @@ public class GeigerHud {
         // Bar background
         context.fill(x, y + 10, x + 100, y + 18, 0xFF333333);
 
-        // Bar fill
+        // Bar fill, on a log scale so a single far-off ore still shows
         int barColor = level == 0 ? 0xFF00FF00 : level == 1 ? 0xFFFFAA00 : 0xFFFF0000;
-        int barWidth = level == 0 ? 10 : level == 1 ? 55 : 100;
+        int barWidth = UraniumRadiationHandler.getIntensityPercent(GeigerCounterClient.getIntensity());
         context.fill(x, y + 10, x + barWidth, y + 18, barColor);
 
         // Distance text
@@ -0,0 +1,129 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.mob.MobEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Radiation for mobs and villagers. Rather than going through every entity in the world,
+ * this starts from the sections of the ore index and asks the world's entity sections what
+ * is standing near them, so mobs far from any ore are never looked at.
+ * Mob exposure isn't saved, it's dropped when the mob unloads.
+ */
+public class MobRadiationHandler {
+
+    // Mobs are all checked together every this many ticks
+    private static final int INTERVAL = 10;
+
+    // Exposure by entity id, only for mobs that currently have some
+    private static final Map<ServerWorld, Int2ObjectOpenHashMap<RadiationExposure>> exposures = new HashMap<>();
+    // Ids of mobs already checked this pass, and of those found near unshielded ore
+    private static final IntOpenHashSet checked = new IntOpenHashSet();
+    private static final IntOpenHashSet exposed = new IntOpenHashSet();
+
+    public static void register() {
+        ServerTickEvents.END_WORLD_TICK.register(MobRadiationHandler::onWorldTick);
+        ServerWorldEvents.UNLOAD.register((server, world) -> exposures.remove(world));
+    }
+
+    private static void onWorldTick(ServerWorld world) {
+        long time = world.getTime();
+        if (time % INTERVAL != 0) return;
+
+        findExposed(world);
+        Int2ObjectOpenHashMap<RadiationExposure> worldExposures = exposures.get(world);
+
+        if (!exposed.isEmpty()) {
+            if (worldExposures == null) {
+                worldExposures = new Int2ObjectOpenHashMap<>();
+                exposures.put(world, worldExposures);
+            }
+            for (int id : exposed) {
+                RadiationExposure state = worldExposures.get(id);
+                if (state == null) {
+                    worldExposures.put(id, new RadiationExposure(0, time, UraniumRadiationHandler.EXPOSURE_GAIN_RATE));
+                } else if (state.rate() != UraniumRadiationHandler.EXPOSURE_GAIN_RATE) {
+                    worldExposures.put(id, state.withRate(time, UraniumRadiationHandler.EXPOSURE_GAIN_RATE));
+                }
+            }
+        }
+
+        if (worldExposures != null) {
+            update(world, worldExposures, time);
+            if (worldExposures.isEmpty()) exposures.remove(world);
+        }
+        checked.clear();
+        exposed.clear();
+    }
+
+    // Fills exposed with every mob within CHECK_RADIUS of ore that isn't behind shielding
+    private static void findExposed(ServerWorld world) {
+        UraniumOreIndex index = UraniumOreIndex.getIfPresent(world);
+        if (index == null) return;
+        RadiationShielding shielding = RadiationShielding.get(world);
+        int radius = UraniumRadiationHandler.CHECK_RADIUS;
+
+        index.forEachSourceSection(section -> {
+            int minX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(section));
+            int minY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(section));
+            int minZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(section));
+            Box box = new Box(minX - radius, minY - radius, minZ - radius,
+                    minX + 16 + radius, minY + 16 + radius, minZ + 16 + radius);
+
+            for (MobEntity mob : world.getEntitiesByClass(MobEntity.class, box, Entity::isAlive)) {
+                // Sections next to each other find the same mobs
+                if (!checked.add(mob.getId())) continue;
+
+                BlockPos pos = mob.getBlockPos();
+                if (index.nearestChebyshevDistance(pos, radius) > radius) continue;
+                // Out of rays counts as not exposed, the mob is looked at again next pass
+                if (shielding.hasUnshieldedSourceWithin(world, index, pos, radius, true)
+                        && !shielding.wasDeferred()) {
+                    exposed.add(mob.getId());
+                }
+            }
+        });
+    }
+
+    // Applies effects and switches mobs that left the ore to decaying, the same way players are handled
+    private static void update(ServerWorld world, Int2ObjectOpenHashMap<RadiationExposure> worldExposures, long time) {
+        ObjectIterator<Int2ObjectMap.Entry<RadiationExposure>> it = worldExposures.int2ObjectEntrySet().fastIterator();
+        while (it.hasNext()) {
+            Int2ObjectMap.Entry<RadiationExposure> entry = it.next();
+            if (!(world.getEntityById(entry.getIntKey()) instanceof MobEntity mob) || !mob.isAlive()) {
+                it.remove();
+                continue;
+            }
+
+            RadiationExposure state = entry.getValue();
+            int exposure = state.valueAt(time);
+            int previous = state.valueAt(time - INTERVAL);
+            boolean near = exposed.contains(entry.getIntKey());
+
+            if (exposure >= UraniumRadiationHandler.EXPOSURE_THRESHOLD_TICKS) {
+                UraniumRadiationHandler.applyRadiationEffects(mob, exposure, INTERVAL, false);
+            } else if (previous >= UraniumRadiationHandler.EXPOSURE_THRESHOLD_TICKS) {
+                UraniumRadiationHandler.applyRadiationEffects(mob, previous, 0, true);
+            }
+
+            if (near) continue;
+            if (exposure == 0) {
+                it.remove();
+            } else if (state.rate() != UraniumRadiationHandler.EXPOSURE_DECAY_RATE) {
+                entry.setValue(state.withRate(time, UraniumRadiationHandler.EXPOSURE_DECAY_RATE));
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.fabricmc.fabric.api.attachment.v1.AttachmentRegistry;
+import net.fabricmc.fabric.api.attachment.v1.AttachmentType;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.tcmfatbird.tutorialmod.TutorialMod;
+import net.tcmfatbird.tutorialmod.util.BlockSearch;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Every radiation source in a chunk, saved with the chunk so the ore index can be filled
+ * without scanning it. The list is seeded from the chunk's sections when its features start,
+ * which covers whatever the noise step wrote, then added to as features place ore and kept
+ * up to date as blocks change afterwards. Chunks from before this existed are scanned once
+ * and get one then.
+ * <p>
+ * The list only holds for the set of sources it was made with, so it's stored with
+ * RadiationSources' fingerprint and ignored once that changes.
+ * Positions are packed chunk-local positions: (y &lt;&lt; 8) | (z &lt;&lt; 4) | x, with y signed.
+ */
+public record OrePlacements(int fingerprint, int[] positions) {
+
+    public static final Codec<OrePlacements> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Codec.INT.fieldOf("fingerprint").forGetter(OrePlacements::fingerprint),
+            Codec.INT_STREAM.xmap(IntStream::toArray, Arrays::stream).fieldOf("positions").forGetter(OrePlacements::positions)
+    ).apply(instance, OrePlacements::new));
+
+    @SuppressWarnings("UnstableApiUsage")
+    public static final AttachmentType<OrePlacements> ATTACHMENT = AttachmentRegistry.<OrePlacements>builder()
+            .persistent(CODEC)
+            .buildAndRegister(Identifier.of(TutorialMod.MOD_ID, "ore_placements"));
+
+    // The chunk whose features are being placed on this thread, and the sources collected for it.
+    // Features only run for one chunk at a time per thread
+    private static final ThreadLocal<Pending> PENDING = new ThreadLocal<>();
+
+    private record Pending(Chunk chunk, IntArrayList positions) {
+    }
+
+    // Nothing to do but load the class, so the attachment exists before the first chunk is read
+    public static void register() {
+    }
+
+    /**
+     * The chunk's list, or null if it has none that matches the current sources.
+     */
+    @Nullable
+    @SuppressWarnings("UnstableApiUsage")
+    public static OrePlacements get(Chunk chunk) {
+        OrePlacements placements = chunk.getAttached(ATTACHMENT);
+        return placements != null && placements.fingerprint() == RadiationSources.getFingerprint() ? placements : null;
+    }
+
+    @SuppressWarnings("UnstableApiUsage")
+    public static void set(Chunk chunk, int[] positions) {
+        chunk.setAttached(ATTACHMENT, new OrePlacements(RadiationSources.getFingerprint(), positions));
+    }
+
+    /**
+     * Starts the list of a chunk about to get its features with every source already in it.
+     * Noise writes ore veins straight into the sections, and features of neighbouring chunks
+     * can place ore here first; the palettes rule out almost every section, so this is cheap.
+     * Until finish, what the chunk's own features place is only collected, not saved.
+     */
+    public static void start(Chunk chunk) {
+        ChunkSection[] sections = chunk.getSectionArray();
+        IntArrayList found = new IntArrayList();
+
+        for (int i = 0; i < sections.length; i++) {
+            ChunkSection section = sections[i];
+            if (section.isEmpty()) continue;
+
+            int baseY = ChunkSectionPos.getBlockCoord(chunk.sectionIndexToCoord(i));
+            BlockSearch.forEachMatchInSection(section.getBlockStateContainer(), RadiationSources::isSource,
+                    (x, y, z, state) -> found.add(pack(x, baseY + y, z)));
+        }
+        PENDING.set(new Pending(chunk, found));
+    }
+
+    /**
+     * Saves what was collected for the chunk since start, once its features are done.
+     */
+    public static void finish(Chunk chunk) {
+        Pending pending = PENDING.get();
+        if (pending == null || pending.chunk() != chunk) return;
+        PENDING.remove();
+
+        // A block can be recorded more than once while features overwrite each other
+        int[] positions = pending.positions().toIntArray();
+        Arrays.sort(positions);
+        int size = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (i == 0 || positions[i] != positions[i - 1]) positions[size++] = positions[i];
+        }
+        set(chunk, Arrays.copyOf(positions, size));
+    }
+
+    /**
+     * Notes a source at pos. A chunk without a matching list is left alone: before its features
+     * start the seeding scan finds the ore, and otherwise the chunk gets scanned when loaded.
+     */
+    public static void record(Chunk chunk, BlockPos pos, boolean isSource) {
+        // The chunk whose features are running on this thread just collects them
+        Pending pending = PENDING.get();
+        if (pending != null && pending.chunk() == chunk) {
+            int packed = pack(pos);
+            if (isSource) {
+                pending.positions().add(packed);
+            } else {
+                pending.positions().removeIf(position -> position == packed);
+            }
+            return;
+        }
+
+        // Everything else, like ore a neighbour's features spill in here, goes straight into the list
+        OrePlacements placements = get(chunk);
+        if (placements == null) return;
+
+        int packed = pack(pos);
+        int i = placements.indexOf(packed);
+        if (isSource == (i >= 0)) return;
+
+        int[] positions;
+        if (isSource) {
+            positions = Arrays.copyOf(placements.positions, placements.positions.length + 1);
+            positions[positions.length - 1] = packed;
+        } else {
+            positions = new int[placements.positions.length - 1];
+            System.arraycopy(placements.positions, 0, positions, 0, i);
+            System.arraycopy(placements.positions, i + 1, positions, i, positions.length - i);
+        }
+        set(chunk, positions);
+    }
+
+    private int indexOf(int packed) {
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] == packed) return i;
+        }
+        return -1;
+    }
+
+    public static int pack(BlockPos pos) {
+        return (pos.getY() << 8) | ((pos.getZ() & 15) << 4) | (pos.getX() & 15);
+    }
+
+    public static int pack(int x, int y, int z) {
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+}
@@ -0,0 +1,39 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+
+import java.util.stream.LongStream;
+
+/**
+ * Radiation exposure of a player or mob. Exposure only changes at a fixed rate between evaluations,
+ * so this stores the value at sinceTime and the rate, and the current value is worked out
+ * whenever it's read. sinceTime is world time rather than server ticks so it still means
+ * the same thing after a restart.
+ */
+public record RadiationExposure(int value, long sinceTime, int rate) {
+
+    public static final int MAX = 400;
+
+    // Two longs on the player: the time, then the value and rate packed together
+    public static final Codec<RadiationExposure> CODEC = Codec.LONG_STREAM.comapFlatMap(
+            stream -> {
+                long[] data = stream.toArray();
+                if (data.length != 2) return DataResult.error(() -> "Expected 2 longs for radiation exposure, got " + data.length);
+                return DataResult.success(new RadiationExposure((int) (data[1] >> 32), data[0], (int) data[1]));
+            },
+            exposure -> LongStream.of(exposure.sinceTime(), ((long) exposure.value() << 32) | (exposure.rate() & 0xFFFFFFFFL))
+    );
+
+    public int valueAt(long time) {
+        long current = value + rate * (time - sinceTime);
+        return (int) Math.max(0, Math.min(MAX, current));
+    }
+
+    /**
+     * The same exposure from time onwards, changing at a new rate.
+     */
+    public RadiationExposure withRate(long time, int newRate) {
+        return new RadiationExposure(valueAt(time), time, newRate);
+    }
+}
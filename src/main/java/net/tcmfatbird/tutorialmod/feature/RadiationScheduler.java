@@ -0,0 +1,100 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Decides which players get their radiation evaluated on a given tick.
+ * Each player has a staggered slot and a re-check interval picked by the evaluator,
+ * and evaluation stops once the tick's time budget is spent. Players that didn't
+ * fit stay due and go first on the next tick.
+ */
+public class RadiationScheduler {
+
+    // Can be set at startup with -Dtutorialmod.radiation.budgetNanos=..., or later with /radiation budget
+    public static final long DEFAULT_BUDGET_NANOS = 500_000L;
+    // New players are spread over this many ticks so they don't all land on the same one
+    private static final int STAGGER_TICKS = 20;
+
+    private static long budgetNanos = Long.getLong("tutorialmod.radiation.budgetNanos", DEFAULT_BUDGET_NANOS);
+
+    private static final Map<UUID, Slot> slots = new HashMap<>();
+    private static final List<ServerPlayerEntity> due = new ArrayList<>();
+
+    // The budget is shared by all worlds ticking within the same server tick
+    private static int budgetTick = -1;
+    private static long spentNanos = 0;
+
+    private static final class Slot {
+        int lastTick;
+        int nextTick;
+    }
+
+    @FunctionalInterface
+    public interface Evaluator {
+        /**
+         * Evaluates one player. elapsedTicks is how long it's been since their last
+         * evaluation. Returns how many ticks to wait before evaluating them again.
+         */
+        int evaluate(ServerPlayerEntity player, int elapsedTicks);
+    }
+
+    public static long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public static void setBudgetNanos(long nanos) {
+        budgetNanos = Math.max(0, nanos);
+    }
+
+    public static void run(ServerWorld world, Evaluator evaluator) {
+        int tick = world.getServer().getTicks();
+        if (tick != budgetTick) {
+            budgetTick = tick;
+            spentNanos = 0;
+        }
+
+        due.clear();
+        for (ServerPlayerEntity player : world.getPlayers()) {
+            Slot slot = slots.get(player.getUuid());
+            if (slot == null) {
+                slot = new Slot();
+                slot.lastTick = tick - 1;
+                slot.nextTick = tick + Math.floorMod(player.getUuid().hashCode(), STAGGER_TICKS);
+                slots.put(player.getUuid(), slot);
+            }
+            if (slot.nextTick <= tick) due.add(player);
+        }
+        if (due.isEmpty()) return;
+
+        // Most overdue first, so nobody waits more than a tick or two past their slot
+        due.sort(Comparator.comparingInt(player -> slots.get(player.getUuid()).nextTick));
+
+        for (int i = 0; i < due.size(); i++) {
+            // Always evaluate at least one player per world, or a busy world could starve the next
+            if (i > 0 && spentNanos >= budgetNanos) break;
+
+            ServerPlayerEntity player = due.get(i);
+            Slot slot = slots.get(player.getUuid());
+            long start = System.nanoTime();
+
+            int interval = evaluator.evaluate(player, tick - slot.lastTick);
+            slot.lastTick = tick;
+            slot.nextTick = tick + Math.max(1, interval);
+
+            spentNanos += System.nanoTime() - start;
+        }
+        due.clear();
+    }
+
+    public static void remove(UUID uuid) {
+        slots.remove(uuid);
+    }
+}
@@ -0,0 +1,405 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
+import net.tcmfatbird.tutorialmod.util.ModTags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reduces each source's radiation by the blocks between it and the receiver. Blocks in the
+ * radiation_shielding tag let 10% through, everything else all of it, so ore buried in
+ * ordinary rock is as dangerous as it always was.
+ * <p>
+ * The blocks in between are found by marching a ray voxel by voxel (Amanatides &amp; Woo). Each
+ * ray is split where it enters the receiver's section. The outer part is traced once per source
+ * and receiver section, towards the section's centre, so moving around inside a section or
+ * sharing it with other players keeps hitting the cache. A cached part is only thrown away when
+ * a block changes its transmission in a section it crossed. The inner part is at most a
+ * section across and is traced on every query, so walls right around the receiver are exact.
+ * <p>
+ * The number of outer rays traced per world per tick is capped. Past the cap, a stale result
+ * for the source is reused, from this section or a neighbouring one, and a source with none at
+ * all counts as unshielded until the next query.
+ */
+public class RadiationShielding {
+
+    private static final Map<World, RadiationShielding> SHIELDINGS = new ConcurrentHashMap<>();
+    private static final List<ChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static final float SHIELDING_TRANSMISSION = 0.1f;
+    // Rays stop once this little gets through, it wouldn't show on the Geiger counter anyway
+    private static final float MIN_TRANSMISSION = 0.01f;
+    // Contributions this small aren't worth a ray, they're counted unshielded
+    private static final float MIN_CONTRIBUTION = 1.0e-4f;
+    // The cache is dropped as a whole past this many entries, rather than tracking which are old
+    private static final int MAX_ENTRIES = 16384;
+
+    // Can be set at startup with -Dtutorialmod.radiation.maxRaysPerTick=..., or later with /radiation rays
+    public static final int DEFAULT_MAX_RAYS_PER_TICK = 256;
+    private static int maxRaysPerTick = Integer.getInteger("tutorialmod.radiation.maxRaysPerTick", DEFAULT_MAX_RAYS_PER_TICK);
+    // Background queries (mobs) get a separate, smaller budget so they can't starve players
+    private static final int BACKGROUND_RAY_SHARE = 4;
+
+    // Transmission per raw block state id, built on first use and dropped whenever tags reload
+    private static volatile float[] transmissions = null;
+
+    // Receiver section -> source position -> cached ray
+    private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<Entry>> entries = new Long2ObjectOpenHashMap<>();
+    // Section -> every cached ray that crossed it
+    private final Long2ObjectOpenHashMap<List<Entry>> crossings = new Long2ObjectOpenHashMap<>();
+    private int entryCount = 0;
+    private int crossingCount = 0;
+
+    private long rayTime = Long.MIN_VALUE;
+    private int raysThisTick = 0;
+    private int backgroundRaysThisTick = 0;
+    private boolean deferred = false;
+    private boolean background = false;
+
+    // Receiver sections queried since the cache was last dropped, so a change inside one can
+    // be reported even though no cached ray crosses it
+    private final LongOpenHashSet receivers = new LongOpenHashSet();
+
+    // Scratch state for the ray being marched
+    private final LongArrayList crossed = new LongArrayList();
+    private boolean sawUnloaded = false;
+
+    private static final class Entry {
+        float transmission;
+        boolean valid;
+    }
+
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onShieldingChanged(World world, BlockPos pos);
+    }
+
+    public static void register() {
+        ServerWorldEvents.UNLOAD.register((server, world) -> remove(world));
+        BlockChangeTracker.addListener(RadiationShielding::onBlockChanges);
+        CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> transmissions = null);
+    }
+
+    /**
+     * Called when a block change made some cached ray through that spot stale.
+     * pos is only valid during the call.
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static RadiationShielding get(World world) {
+        return SHIELDINGS.computeIfAbsent(world, w -> new RadiationShielding());
+    }
+
+    static void remove(World world) {
+        SHIELDINGS.remove(world);
+    }
+
+    public static int getMaxRaysPerTick() {
+        return maxRaysPerTick;
+    }
+
+    public static void setMaxRaysPerTick(int rays) {
+        maxRaysPerTick = Math.max(0, rays);
+    }
+
+    public static float getTransmission(BlockState state) {
+        return getTransmission(Block.getRawIdFromState(state));
+    }
+
+    public static float getTransmission(int stateId) {
+        float[] table = transmissions;
+        if (table == null) {
+            table = buildTransmissions();
+            transmissions = table;
+        }
+        return stateId < table.length ? table[stateId] : 1.0f;
+    }
+
+    private static float[] buildTransmissions() {
+        float[] table = new float[Block.STATE_IDS.size()];
+        for (BlockState state : Block.STATE_IDS) {
+            table[Block.getRawIdFromState(state)] = state.isIn(ModTags.Blocks.RADIATION_SHIELDING)
+                    ? SHIELDING_TRANSMISSION : 1.0f;
+        }
+        return table;
+    }
+
+    private static void onBlockChanges(World world, BlockChangeTracker.Changes changes) {
+        RadiationShielding shielding = SHIELDINGS.get(world);
+        if (shielding == null) return;
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int i = 0; i < changes.size(); i++) {
+            if (getTransmission(changes.oldStateId(i)) == getTransmission(changes.newStateId(i))) continue;
+
+            long section = changes.sectionKey(i);
+            List<Entry> crossed = shielding.crossings.remove(section);
+            if (crossed != null) {
+                shielding.crossingCount -= crossed.size();
+                for (Entry entry : crossed) {
+                    entry.valid = false;
+                }
+            } else if (!shielding.receivers.contains(section)) {
+                continue;
+            }
+
+            changes.getPos(i, pos);
+            for (ChangeListener listener : LISTENERS) {
+                listener.onShieldingChanged(world, pos);
+            }
+        }
+    }
+
+    /**
+     * Like UraniumOreIndex.intensityAt, but with every contribution reduced by the blocks in
+     * between. maxRange should be the largest range of any source.
+     */
+    public float intensityAt(World world, UraniumOreIndex index, BlockPos center, int maxRange) {
+        float[] total = {0.0f};
+        deferred = false;
+
+        index.forEachSourceWithin(center, maxRange, (x, y, z, strength, range) -> {
+            int dx = x - center.getX();
+            int dy = y - center.getY();
+            int dz = z - center.getZ();
+            int distSq = Math.max(1, dx * dx + dy * dy + dz * dz);
+            if (distSq > range * range) return;
+
+            float contribution = strength / distSq;
+            if (contribution >= MIN_CONTRIBUTION) {
+                contribution *= transmission(world, x, y, z, center);
+            }
+            total[0] += contribution;
+        });
+        return total[0];
+    }
+
+    /**
+     * Whether any source within the given cube radius gets at least half its radiation through.
+     */
+    public boolean hasUnshieldedSourceWithin(World world, UraniumOreIndex index, BlockPos center, int radius) {
+        return hasUnshieldedSourceWithin(world, index, center, radius, false);
+    }
+
+    /**
+     * As above. Background queries trace rays from their own budget, a quarter of the
+     * per-tick cap, instead of the one players use.
+     */
+    public boolean hasUnshieldedSourceWithin(World world, UraniumOreIndex index, BlockPos center, int radius,
+                                             boolean background) {
+        boolean[] found = {false};
+        deferred = false;
+        this.background = background;
+
+        index.forEachSourceWithin(center, radius, (x, y, z, strength, range) -> {
+            if (!found[0] && transmission(world, x, y, z, center) >= 0.5f) found[0] = true;
+        });
+        this.background = false;
+        return found[0];
+    }
+
+    /**
+     * Whether the last query had to fall back on stale or unshielded values because the
+     * tick's rays ran out, so its result shouldn't be trusted for long.
+     */
+    public boolean wasDeferred() {
+        return deferred;
+    }
+
+    // --- RAYS ---
+
+    private float transmission(World world, int sourceX, int sourceY, int sourceZ, BlockPos target) {
+        long section = ChunkSectionPos.toLong(target);
+        if (receivers.add(section) && receivers.size() >= MAX_ENTRIES) {
+            clear();
+            receivers.add(section);
+        }
+
+        // The part of the ray inside the receiver's section, traced back from the receiver
+        float inner = march(world, target.getX(), target.getY(), target.getZ(), sourceX, sourceY, sourceZ, section, true);
+        if (inner == 0.0f || ChunkSectionPos.asLong(sourceX >> 4, sourceY >> 4, sourceZ >> 4) == section) {
+            return inner;
+        }
+        return inner * outerTransmission(world, sourceX, sourceY, sourceZ, section);
+    }
+
+    // Transmission from the source up to where its ray towards the section's centre enters the section
+    private float outerTransmission(World world, int sourceX, int sourceY, int sourceZ, long section) {
+        Long2ObjectOpenHashMap<Entry> forSection = entries.get(section);
+        long source = BlockPos.asLong(sourceX, sourceY, sourceZ);
+
+        Entry entry = forSection == null ? null : forSection.get(source);
+        if (entry != null && entry.valid) {
+            return entry.transmission;
+        }
+
+        if (!takeRay(world)) {
+            deferred = true;
+            if (entry != null) return entry.transmission;
+            // A receiver that just walked into the section usually has results next door
+            Entry nearby = findNeighbourEntry(section, source);
+            return nearby != null ? nearby.transmission : 1.0f;
+        }
+
+        if (entry == null) {
+            if (entryCount >= MAX_ENTRIES) clear();
+            forSection = entries.computeIfAbsent(section, k -> new Long2ObjectOpenHashMap<>());
+            entry = new Entry();
+            forSection.put(source, entry);
+            entryCount++;
+        }
+
+        sawUnloaded = false;
+        entry.transmission = march(world, sourceX, sourceY, sourceZ,
+                ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(section)) + 8,
+                ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(section)) + 8,
+                ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(section)) + 8,
+                section, false);
+        // Chunks loading in don't go through setBlockState, so a ray through one that wasn't
+        // loaded yet is traced again next time
+        entry.valid = !sawUnloaded;
+
+        // Sections the entry crossed on an earlier path stay linked, which at worst
+        // invalidates it once for nothing
+        for (int i = 0; i < crossed.size(); i++) {
+            List<Entry> list = crossings.computeIfAbsent(crossed.getLong(i), k -> new ArrayList<>());
+            if (!list.contains(entry)) {
+                list.add(entry);
+                crossingCount++;
+            }
+        }
+        float transmission = entry.transmission;
+        if (crossingCount >= MAX_ENTRIES * 8) clear();
+        return transmission;
+    }
+
+    private Entry findNeighbourEntry(long section, long source) {
+        int x = ChunkSectionPos.unpackX(section);
+        int y = ChunkSectionPos.unpackY(section);
+        int z = ChunkSectionPos.unpackZ(section);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    Long2ObjectOpenHashMap<Entry> forSection = entries.get(ChunkSectionPos.asLong(x + dx, y + dy, z + dz));
+                    Entry entry = forSection == null ? null : forSection.get(source);
+                    if (entry != null) return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean takeRay(World world) {
+        long time = world.getTime();
+        if (time != rayTime) {
+            rayTime = time;
+            raysThisTick = 0;
+            backgroundRaysThisTick = 0;
+        }
+        if (background) {
+            if (backgroundRaysThisTick >= maxRaysPerTick / BACKGROUND_RAY_SHARE) return false;
+            backgroundRaysThisTick++;
+            return true;
+        }
+        if (raysThisTick >= maxRaysPerTick) return false;
+        raysThisTick++;
+        return true;
+    }
+
+    private void clear() {
+        entries.clear();
+        crossings.clear();
+        receivers.clear();
+        entryCount = 0;
+        crossingCount = 0;
+    }
+
+    /**
+     * Marches from the centre of one block to the centre of the target block, multiplying the
+     * transmission of every block strictly in between. Unloaded chunks count as air.
+     * With inside set, the march stops on leaving limitSection; otherwise it stops on entering it.
+     * Every section the ray touched before stopping is added to crossed.
+     */
+    private float march(World world, int x, int y, int z, int targetX, int targetY, int targetZ,
+                        long limitSection, boolean inside) {
+        int dx = targetX - x;
+        int dy = targetY - y;
+        int dz = targetZ - z;
+        if (dx == 0 && dy == 0 && dz == 0) return 1.0f;
+        int stepX = Integer.signum(dx);
+        int stepY = Integer.signum(dy);
+        int stepZ = Integer.signum(dz);
+
+        // The ray runs from t = 0 at the source to t = 1 at the target. Starting from a block
+        // centre, the first boundary on each axis is half a block away
+        double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : 1.0 / Math.abs(dx);
+        double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : 1.0 / Math.abs(dy);
+        double deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : 1.0 / Math.abs(dz);
+        double maxX = deltaX * 0.5;
+        double maxY = deltaY * 0.5;
+        double maxZ = deltaZ * 0.5;
+
+        long section = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+        crossed.clear();
+        crossed.add(section);
+
+        WorldChunk chunk = null;
+        float transmission = 1.0f;
+
+        while (true) {
+            if (maxX <= maxY && maxX <= maxZ) {
+                x += stepX;
+                maxX += deltaX;
+            } else if (maxY <= maxZ) {
+                y += stepY;
+                maxY += deltaY;
+            } else {
+                z += stepZ;
+                maxZ += deltaZ;
+            }
+
+            long current = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+            if (current != section) {
+                if ((current == limitSection) != inside) break;
+                section = current;
+                crossed.add(section);
+            }
+
+            if (x == targetX && y == targetY && z == targetZ) break;
+
+            if (chunk == null || chunk.getPos().x != x >> 4 || chunk.getPos().z != z >> 4) {
+                chunk = world.getChunkManager().getWorldChunk(x >> 4, z >> 4);
+            }
+            if (chunk == null) {
+                sawUnloaded = true;
+                continue;
+            }
+            if (world.isOutOfHeightLimit(y)) continue;
+
+            ChunkSection chunkSection = chunk.getSectionArray()[world.getSectionIndex(y)];
+            if (chunkSection.isEmpty()) continue;
+
+            transmission *= getTransmission(chunkSection.getBlockState(x & 15, y & 15, z & 15));
+            if (transmission < MIN_TRANSMISSION) return 0.0f;
+        }
+        return transmission;
+    }
+}
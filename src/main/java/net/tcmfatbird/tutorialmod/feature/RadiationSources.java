@@ -0,0 +1,193 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.tcmfatbird.tutorialmod.TutorialMod;
+import net.tcmfatbird.tutorialmod.network.RadiationSourcesPacket;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which blocks give off radiation, loaded from data/&lt;namespace&gt;/radiation_source/*.json:
+ * <pre>{"blocks": ["tutorialmod:uranium_ore"], "strength": 1.0, "range": 10}</pre>
+ * Every reload compiles the entries into arrays indexed by raw block state id, so
+ * checking a block state is a single array load. Clients get the same table from the server.
+ */
+public class RadiationSources {
+
+    public record Source(List<Block> blocks, float strength, int range) {
+        public static final Codec<Source> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Registries.BLOCK.getCodec().listOf().fieldOf("blocks").forGetter(Source::blocks),
+                Codec.floatRange(0.0f, Float.MAX_VALUE).fieldOf("strength").forGetter(Source::strength),
+                Codec.intRange(1, 64).fieldOf("range").forGetter(Source::range)
+        ).apply(instance, Source::new));
+
+        public static final PacketCodec<RegistryByteBuf, Source> PACKET_CODEC = PacketCodec.tuple(
+                PacketCodecs.registryValue(RegistryKeys.BLOCK).collect(PacketCodecs.toList()), Source::blocks,
+                PacketCodecs.FLOAT, Source::strength,
+                PacketCodecs.VAR_INT, Source::range,
+                Source::new
+        );
+    }
+
+    // strength[id] > 0 means the state with that raw id is a source
+    private record Table(List<Source> sources, float[] strength, byte[] range, int maxRange, int fingerprint) {
+        static final Table EMPTY = new Table(List.of(), new float[0], new byte[0], 0, 0);
+    }
+
+    // Swapped as a whole, so readers on the client and server threads never see half a table
+    private static volatile Table table = Table.EMPTY;
+
+    public static void register() {
+        ResourceManagerHelper.get(ResourceType.SERVER_DATA).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
+            @Override
+            public Identifier getFabricId() {
+                return Identifier.of(TutorialMod.MOD_ID, "radiation_sources");
+            }
+
+            @Override
+            public void reload(ResourceManager manager) {
+                apply(load(manager));
+            }
+        });
+
+        // Ore that stopped (or started) counting has to be re-indexed, and clients need the new table
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            if (!success) return;
+            for (ServerWorld world : server.getWorlds()) {
+                UraniumOreIndex.get(world).rebuild(world);
+            }
+            sync(server);
+        });
+
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) ->
+                ServerPlayNetworking.send(handler.getPlayer(), new RadiationSourcesPacket(table.sources())));
+    }
+
+    public static boolean isSource(BlockState state) {
+        return isSource(Block.getRawIdFromState(state));
+    }
+
+    public static float getStrength(BlockState state) {
+        return getStrength(Block.getRawIdFromState(state));
+    }
+
+    public static int getRange(BlockState state) {
+        return getRange(Block.getRawIdFromState(state));
+    }
+
+    // The same by raw state id, for BlockChangeTracker batches
+
+    public static boolean isSource(int stateId) {
+        float[] strength = table.strength();
+        return stateId < strength.length && strength[stateId] > 0.0f;
+    }
+
+    public static float getStrength(int stateId) {
+        float[] strength = table.strength();
+        return stateId < strength.length ? strength[stateId] : 0.0f;
+    }
+
+    public static int getRange(int stateId) {
+        byte[] range = table.range();
+        return stateId < range.length ? range[stateId] : 0;
+    }
+
+    /**
+     * The largest range of any source, i.e. how far out a search has to look.
+     */
+    public static int getMaxRange() {
+        return table.maxRange();
+    }
+
+    /**
+     * Identifies the current set of sources by block id, strength and range. Unlike raw
+     * state ids it stays the same across restarts, so it can be saved next to data that is
+     * only valid for this set of sources.
+     */
+    public static int getFingerprint() {
+        return table.fingerprint();
+    }
+
+    /**
+     * Replaces the table. Called on reload, and on the client when the server sends its table.
+     */
+    public static void apply(List<Source> sources) {
+        int stateCount = Block.STATE_IDS.size();
+        float[] strength = new float[stateCount];
+        byte[] range = new byte[stateCount];
+        int maxRange = 0;
+        int fingerprint = 0;
+
+        for (Source source : sources) {
+            if (source.strength() <= 0.0f) continue;
+            maxRange = Math.max(maxRange, source.range());
+
+            for (Block block : source.blocks()) {
+                // Summed, so the order files are loaded in doesn't matter
+                fingerprint += (Registries.BLOCK.getId(block).hashCode() * 31
+                        + Float.floatToIntBits(source.strength())) * 31 + source.range();
+
+                for (BlockState state : block.getStateManager().getStates()) {
+                    int id = Block.getRawIdFromState(state);
+                    // A block listed twice keeps its strongest entry
+                    if (source.strength() > strength[id]) {
+                        strength[id] = source.strength();
+                        range[id] = (byte) source.range();
+                    }
+                }
+            }
+        }
+
+        table = new Table(List.copyOf(sources), strength, range, maxRange, fingerprint);
+    }
+
+    private static List<Source> load(ResourceManager manager) {
+        List<Source> sources = new ArrayList<>();
+        Map<Identifier, Resource> resources = manager.findResources("radiation_source", id -> id.getPath().endsWith(".json"));
+
+        for (Map.Entry<Identifier, Resource> entry : resources.entrySet()) {
+            try (Reader reader = entry.getValue().getReader()) {
+                JsonElement json = JsonParser.parseReader(reader);
+                Source.CODEC.parse(JsonOps.INSTANCE, json)
+                        .resultOrPartial(error -> TutorialMod.LOGGER.error("Invalid radiation source {}: {}", entry.getKey(), error))
+                        .ifPresent(sources::add);
+            } catch (Exception e) {
+                TutorialMod.LOGGER.error("Couldn't read radiation source {}", entry.getKey(), e);
+            }
+        }
+        return sources;
+    }
+
+    private static void sync(MinecraftServer server) {
+        RadiationSourcesPacket packet = new RadiationSourcesPacket(table.sources());
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            ServerPlayNetworking.send(player, packet);
+        }
+    }
+}
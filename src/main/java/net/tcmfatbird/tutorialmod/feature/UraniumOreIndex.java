@@ -0,0 +1,475 @@
+package net.tcmfatbird.tutorialmod.feature;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
+import net.tcmfatbird.tutorialmod.util.BlockSearch;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * Keeps track of where uranium ore (or anything else RadiationSources lists) is in
+ * every loaded chunk section, so radiation queries only have to look at the handful of
+ * sections that actually contain ore instead of reading every block around the player.
+ * Server worlds are indexed from chunk events here; the client indexes its own world
+ * from GeigerCounterClient for Geiger prediction.
+ */
+public class UraniumOreIndex {
+
+    private static final Map<World, UraniumOreIndex> INDEXES = new ConcurrentHashMap<>();
+    private static final List<ChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    // Ore per section, keyed by ChunkSectionPos.asLong
+    private final Long2ObjectOpenHashMap<SectionSources> sections = new Long2ObjectOpenHashMap<>();
+    // Every chunk that has been indexed, so the index can be rebuilt when the sources change
+    private final LongOpenHashSet loadedChunks = new LongOpenHashSet();
+
+    /**
+     * The sources in one section as parallel primitive arrays, so summing the field over
+     * them is a tight loop with no object per source. Positions are packed local
+     * positions: (y << 8) | (z << 4) | x
+     */
+    private static final class SectionSources {
+        short[] positions = new short[4];
+        float[] strengths = new float[4];
+        byte[] ranges = new byte[4];
+        int size = 0;
+
+        // Adds a source, or updates it if there already is one at that position
+        void put(short packed, float strength, int range) {
+            int i = indexOf(packed);
+            if (i < 0) {
+                if (size == positions.length) {
+                    positions = Arrays.copyOf(positions, size * 2);
+                    strengths = Arrays.copyOf(strengths, size * 2);
+                    ranges = Arrays.copyOf(ranges, size * 2);
+                }
+                i = size++;
+                positions[i] = packed;
+            }
+            strengths[i] = strength;
+            ranges[i] = (byte) range;
+        }
+
+        // Order doesn't matter, so the last source fills the gap
+        void remove(short packed) {
+            int i = indexOf(packed);
+            if (i < 0) return;
+            size--;
+            positions[i] = positions[size];
+            strengths[i] = strengths[size];
+            ranges[i] = ranges[size];
+        }
+
+        private int indexOf(short packed) {
+            for (int i = 0; i < size; i++) {
+                if (positions[i] == packed) return i;
+            }
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SourceVisitor {
+        void visit(int x, int y, int z, float strength, int range);
+    }
+
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onOreChanged(World world, BlockPos pos);
+    }
+
+    public static void register() {
+        OrePlacements.register();
+        BlockChangeTracker.addListener(UraniumOreIndex::onBlockChanges);
+        ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> get(world).indexChunk(chunk));
+        ServerChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> get(world).removeChunk(chunk));
+        ServerWorldEvents.UNLOAD.register((server, world) -> remove(world));
+    }
+
+    /**
+     * Called whenever ore is placed or removed in a loaded chunk, after the index is updated.
+     * Changes arrive batched at the end of the tick, and pos is only valid during the call.
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static UraniumOreIndex get(World world) {
+        return INDEXES.computeIfAbsent(world, w -> new UraniumOreIndex());
+    }
+
+    @Nullable
+    public static UraniumOreIndex getIfPresent(World world) {
+        return INDEXES.get(world);
+    }
+
+    static void remove(World world) {
+        INDEXES.remove(world);
+    }
+
+    private static void onBlockChanges(World world, BlockChangeTracker.Changes changes) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int i = 0; i < changes.size(); i++) {
+            int oldState = changes.oldStateId(i);
+            int newState = changes.newStateId(i);
+            boolean wasOre = RadiationSources.isSource(oldState);
+            boolean isOre = RadiationSources.isSource(newState);
+            if (!wasOre && !isOre) continue;
+            // Swapping one source for another with the same strength and range changes nothing
+            if (wasOre && isOre && RadiationSources.getStrength(oldState) == RadiationSources.getStrength(newState)
+                    && RadiationSources.getRange(oldState) == RadiationSources.getRange(newState)) {
+                continue;
+            }
+
+            changes.getPos(i, pos);
+            if (!world.isClient() && wasOre != isOre) {
+                // Changes are flushed before their chunk unloads, so it's still there
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(pos.getX() >> 4, pos.getZ() >> 4);
+                if (chunk != null) OrePlacements.record(chunk, pos, isOre);
+            }
+
+            UraniumOreIndex index = INDEXES.get(world);
+            if (index == null) continue;
+
+            if (isOre) {
+                index.add(pos, RadiationSources.getStrength(newState), RadiationSources.getRange(newState));
+            } else {
+                index.remove(pos);
+            }
+
+            for (ChangeListener listener : LISTENERS) {
+                listener.onOreChanged(world, pos);
+            }
+        }
+    }
+
+    // --- CHUNK TRACKING ---
+
+    void indexChunk(WorldChunk chunk) {
+        removeChunk(chunk);
+        loadedChunks.add(chunk.getPos().toLong());
+
+        // Server chunks know where their ore is, and only have to be scanned if they're older
+        // than that or the sources changed since. The client always scans
+        boolean server = !chunk.getWorld().isClient();
+        if (server) {
+            OrePlacements placements = OrePlacements.get(chunk);
+            if (placements != null) {
+                indexPlacements(chunk, placements);
+                return;
+            }
+        }
+
+        ChunkSection[] chunkSections = chunk.getSectionArray();
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        IntArrayList found = new IntArrayList();
+
+        for (int i = 0; i < chunkSections.length; i++) {
+            ChunkSection section = chunkSections[i];
+            if (section.isEmpty()) continue;
+
+            PalettedContainer<BlockState> states = section.getBlockStateContainer();
+            if (!BlockSearch.mayContain(states, RadiationSources::isSource)) continue;
+
+            SectionSources sources = new SectionSources();
+            int baseY = ChunkSectionPos.getBlockCoord(chunk.sectionIndexToCoord(i));
+            BlockSearch.forEachMatchInSection(states, RadiationSources::isSource, (x, y, z, state) -> {
+                sources.put(pack(x, y, z), RadiationSources.getStrength(state), RadiationSources.getRange(state));
+                found.add(OrePlacements.pack(x, baseY + y, z));
+            });
+
+            if (sources.size > 0) {
+                sections.put(ChunkSectionPos.asLong(chunkX, chunk.sectionIndexToCoord(i), chunkZ), sources);
+            }
+        }
+
+        // The one scan this chunk should ever need
+        if (server) OrePlacements.set(chunk, found.toIntArray());
+    }
+
+    private void indexPlacements(WorldChunk chunk, OrePlacements placements) {
+        ChunkSection[] chunkSections = chunk.getSectionArray();
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+
+        for (int packed : placements.positions()) {
+            int x = packed & 15;
+            int z = (packed >> 4) & 15;
+            int y = packed >> 8;
+            int sectionIndex = chunk.getSectionIndex(y);
+            if (sectionIndex < 0 || sectionIndex >= chunkSections.length) continue;
+
+            // Later worldgen steps can overwrite ore after it was recorded
+            BlockState state = chunkSections[sectionIndex].getBlockState(x, y & 15, z);
+            if (!RadiationSources.isSource(state)) continue;
+
+            long key = ChunkSectionPos.asLong(chunkX, y >> 4, chunkZ);
+            SectionSources sources = sections.get(key);
+            if (sources == null) {
+                sources = new SectionSources();
+                sections.put(key, sources);
+            }
+            sources.put(pack(x, y & 15, z), RadiationSources.getStrength(state), RadiationSources.getRange(state));
+        }
+    }
+
+    void removeChunk(WorldChunk chunk) {
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        loadedChunks.remove(chunk.getPos().toLong());
+        for (int sectionY = chunk.getBottomSectionCoord(); sectionY < chunk.getTopSectionCoord(); sectionY++) {
+            sections.remove(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+    }
+
+    /**
+     * Re-indexes every loaded chunk, for when the set of radiation sources changes.
+     */
+    public void rebuild(World world) {
+        long[] chunks = loadedChunks.toLongArray();
+        sections.clear();
+        loadedChunks.clear();
+
+        for (long chunkPos : chunks) {
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(ChunkPos.getPackedX(chunkPos), ChunkPos.getPackedZ(chunkPos));
+            if (chunk != null) indexChunk(chunk);
+        }
+    }
+
+    void add(BlockPos pos, float strength, int range) {
+        long key = ChunkSectionPos.toLong(pos);
+        SectionSources sources = sections.get(key);
+        if (sources == null) {
+            sources = new SectionSources();
+            sections.put(key, sources);
+        }
+        sources.put(pack(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15), strength, range);
+    }
+
+    private void remove(BlockPos pos) {
+        long key = ChunkSectionPos.toLong(pos);
+        SectionSources sources = sections.get(key);
+        if (sources == null) return;
+
+        sources.remove(pack(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15));
+        if (sources.size == 0) {
+            sections.remove(key);
+        }
+    }
+
+    private static short pack(int x, int y, int z) {
+        return (short) ((y << 8) | (z << 4) | x);
+    }
+
+    // --- QUERIES ---
+
+    /**
+     * True if there is ore anywhere in the cube of the given radius around center.
+     */
+    public boolean hasOreWithin(BlockPos center, int radius) {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+
+        for (int sx = (cx - radius) >> 4; sx <= (cx + radius) >> 4; sx++) {
+            for (int sy = (cy - radius) >> 4; sy <= (cy + radius) >> 4; sy++) {
+                for (int sz = (cz - radius) >> 4; sz <= (cz + radius) >> 4; sz++) {
+                    SectionSources sources = sections.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    if (sources == null) continue;
+
+                    for (int i = 0; i < sources.size; i++) {
+                        short packed = sources.positions[i];
+                        int dx = (sx << 4) + (packed & 15) - cx;
+                        int dy = (sy << 4) + ((packed >> 8) & 15) - cy;
+                        int dz = (sz << 4) + ((packed >> 4) & 15) - cz;
+                        if (Math.abs(dx) <= radius && Math.abs(dy) <= radius && Math.abs(dz) <= radius) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distance (rounded down) to the closest ore inside the cube of the given radius,
+     * or Integer.MAX_VALUE if there is none.
+     */
+    public int nearestDistance(BlockPos center, int radius) {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+        int nearestSq = Integer.MAX_VALUE;
+
+        for (int sx = (cx - radius) >> 4; sx <= (cx + radius) >> 4; sx++) {
+            for (int sy = (cy - radius) >> 4; sy <= (cy + radius) >> 4; sy++) {
+                for (int sz = (cz - radius) >> 4; sz <= (cz + radius) >> 4; sz++) {
+                    SectionSources sources = sections.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    if (sources == null) continue;
+
+                    for (int i = 0; i < sources.size; i++) {
+                        short packed = sources.positions[i];
+                        int dx = (sx << 4) + (packed & 15) - cx;
+                        int dy = (sy << 4) + ((packed >> 8) & 15) - cy;
+                        int dz = (sz << 4) + ((packed >> 4) & 15) - cz;
+                        if (Math.abs(dx) > radius || Math.abs(dy) > radius || Math.abs(dz) > radius) continue;
+
+                        int distSq = dx * dx + dy * dy + dz * dz;
+                        if (distSq < nearestSq) nearestSq = distSq;
+                    }
+                }
+            }
+        }
+        return nearestSq == Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.sqrt(nearestSq);
+    }
+
+    /**
+     * Chebyshev (cube) distance to the closest ore inside the cube of the given radius,
+     * or Integer.MAX_VALUE if there is none. hasOreWithin(center, r) is true exactly when
+     * this is at most r.
+     */
+    public int nearestChebyshevDistance(BlockPos center, int radius) {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+        int nearest = Integer.MAX_VALUE;
+
+        for (int sx = (cx - radius) >> 4; sx <= (cx + radius) >> 4; sx++) {
+            for (int sy = (cy - radius) >> 4; sy <= (cy + radius) >> 4; sy++) {
+                for (int sz = (cz - radius) >> 4; sz <= (cz + radius) >> 4; sz++) {
+                    SectionSources sources = sections.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    if (sources == null) continue;
+
+                    for (int i = 0; i < sources.size; i++) {
+                        short packed = sources.positions[i];
+                        int dx = Math.abs((sx << 4) + (packed & 15) - cx);
+                        int dy = Math.abs((sy << 4) + ((packed >> 8) & 15) - cy);
+                        int dz = Math.abs((sz << 4) + ((packed >> 4) & 15) - cz);
+                        int dist = Math.max(dx, Math.max(dy, dz));
+                        if (dist <= radius && dist < nearest) nearest = dist;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Visits the ChunkSectionPos.asLong key of every section with at least one source in it.
+     */
+    public void forEachSourceSection(LongConsumer consumer) {
+        LongIterator it = sections.keySet().iterator();
+        while (it.hasNext()) {
+            consumer.accept(it.nextLong());
+        }
+    }
+
+    /**
+     * Visits every source inside the cube of the given radius around center.
+     */
+    public void forEachSourceWithin(BlockPos center, int radius, SourceVisitor visitor) {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+
+        for (int sx = (cx - radius) >> 4; sx <= (cx + radius) >> 4; sx++) {
+            for (int sy = (cy - radius) >> 4; sy <= (cy + radius) >> 4; sy++) {
+                for (int sz = (cz - radius) >> 4; sz <= (cz + radius) >> 4; sz++) {
+                    SectionSources sources = sections.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    if (sources == null) continue;
+
+                    for (int i = 0; i < sources.size; i++) {
+                        short packed = sources.positions[i];
+                        int x = (sx << 4) + (packed & 15);
+                        int y = (sy << 4) + ((packed >> 8) & 15);
+                        int z = (sz << 4) + ((packed >> 4) & 15);
+                        if (Math.abs(x - cx) > radius || Math.abs(y - cy) > radius || Math.abs(z - cz) > radius) continue;
+
+                        visitor.visit(x, y, z, sources.strengths[i], sources.ranges[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Radiation intensity at center, ignoring shielding: the sum of strength / distance² over
+     * every source whose range reaches it, measured between block centres. Distances under a
+     * block count as one.
+     * maxRange should be the largest range of any source.
+     */
+    public float intensityAt(BlockPos center, int maxRange) {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+        int maxRangeSq = maxRange * maxRange;
+        float total = 0.0f;
+
+        for (int sx = (cx - maxRange) >> 4; sx <= (cx + maxRange) >> 4; sx++) {
+            int baseX = (sx << 4) - cx;
+            int gapX = axisGap(baseX);
+            for (int sy = (cy - maxRange) >> 4; sy <= (cy + maxRange) >> 4; sy++) {
+                int baseY = (sy << 4) - cy;
+                int gapY = axisGap(baseY);
+                for (int sz = (cz - maxRange) >> 4; sz <= (cz + maxRange) >> 4; sz++) {
+                    int baseZ = (sz << 4) - cz;
+                    int gapZ = axisGap(baseZ);
+                    // Corner sections of the cube can be entirely out of reach
+                    if (gapX * gapX + gapY * gapY + gapZ * gapZ > maxRangeSq) continue;
+
+                    SectionSources sources = sections.get(ChunkSectionPos.asLong(sx, sy, sz));
+                    if (sources != null) total += sum(sources, baseX, baseY, baseZ);
+                }
+            }
+        }
+        return total;
+    }
+
+    // Straight over the arrays without branching on range, so the JIT can keep it tight
+    private static float sum(SectionSources sources, int baseX, int baseY, int baseZ) {
+        short[] positions = sources.positions;
+        float[] strengths = sources.strengths;
+        byte[] ranges = sources.ranges;
+        float total = 0.0f;
+
+        for (int i = 0; i < sources.size; i++) {
+            int packed = positions[i];
+            int dx = baseX + (packed & 15);
+            int dy = baseY + ((packed >> 8) & 15);
+            int dz = baseZ + ((packed >> 4) & 15);
+            int distSq = Math.max(1, dx * dx + dy * dy + dz * dz);
+            int range = ranges[i];
+            float inRange = distSq <= range * range ? 1.0f : 0.0f;
+            total += inRange * strengths[i] / distSq;
+        }
+        return total;
+    }
+
+    // Distance along one axis from the origin to a section spanning base..base+15
+    private static int axisGap(int base) {
+        if (base > 0) return base;
+        if (base + 15 < 0) return -(base + 15);
+        return 0;
+    }
+}
@@ -1,151 +1,339 @@
 package net.tcmfatbird.tutorialmod.feature;
 
+import net.fabricmc.fabric.api.attachment.v1.AttachmentRegistry;
+import net.fabricmc.fabric.api.attachment.v1.AttachmentType;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
-import net.minecraft.block.Block;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.effect.StatusEffect;
 import net.minecraft.entity.effect.StatusEffectInstance;
 import net.minecraft.entity.effect.StatusEffects;
+import net.minecraft.registry.entry.RegistryEntry;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
-import net.tcmfatbird.tutorialmod.block.ModBlocks;
+import net.minecraft.world.World;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.UUID;
 
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.tcmfatbird.tutorialmod.TutorialMod;
+import net.tcmfatbird.tutorialmod.command.CustomCommands;
 import net.tcmfatbird.tutorialmod.item.ModItems;
-import net.tcmfatbird.tutorialmod.network.NearestUraniumPacket;
-import net.tcmfatbird.tutorialmod.network.RadiationLevelPacket;
+import net.tcmfatbird.tutorialmod.network.GeigerStatePacket;
 
 public class UraniumRadiationHandler {
-    private static final int CHECK_RADIUS = 3;
-    private static final int EXPOSURE_THRESHOLD_TICKS = 100;
-    private static final int MAX_EXPOSURE = 400;
+    static final int CHECK_RADIUS = 3;
+    private static final int CLOSE_RANGE = 4;
+    public static final int GEIGER_RANGE = 10;
+    static final int EXPOSURE_THRESHOLD_TICKS = 100;
+    private static final int EFFECT_DURATION_TICKS = 80;
+    // Effects are topped up once they have this little left, which covers the longest gap between evaluations
+    private static final int EFFECT_REFRESH_TICKS = 20;
 
-    private static final Map<UUID, Integer> exposureTicks = new HashMap<>();
+    // Ticks between evaluations for players near ore or holding a Geiger counter, and for everyone else
+    private static final int ACTIVE_INTERVAL = 2;
+    private static final int IDLE_INTERVAL = 8;
+    // Idle players closer than this could walk into range before their next check
+    private static final int WATCH_RADIUS = CHECK_RADIUS + IDLE_INTERVAL;
+
+    // Every cube distance at which something about a player's radiation changes
+    private static final int[] THRESHOLDS = {CHECK_RADIUS, CLOSE_RANGE, GEIGER_RANGE, WATCH_RADIUS};
+    // Readings look this far out so players can move a few blocks before needing a new one
+    private static final int READING_RADIUS = WATCH_RADIUS + 8;
+
+    // Geiger state is only resent when it changes, plus once a second in case a packet went missing
+    private static final int GEIGER_HEARTBEAT_TICKS = 20;
+    // Clients predicting their own readings only get a correction this often
+    private static final int GEIGER_CORRECTION_TICKS = 100;
+    // Distances are rounded down to this step so walking around doesn't resend every tick
+    private static final int GEIGER_DISTANCE_STEP = 2;
+
+    // Exposure per tick while near ore, and while away from it
+    static final int EXPOSURE_GAIN_RATE = 1;
+    static final int EXPOSURE_DECAY_RATE = -2;
+
+    // Saved with the player's data, so exposure survives relogging, restarts and death
+    @SuppressWarnings("UnstableApiUsage")
+    public static final AttachmentType<RadiationExposure> EXPOSURE = AttachmentRegistry.<RadiationExposure>builder()
+            .persistent(RadiationExposure.CODEC)
+            .copyOnDeath()
+            .buildAndRegister(Identifier.of(TutorialMod.MOD_ID, "radiation_exposure"));
+
+    private static final Map<UUID, GeigerState> geigerStates = new HashMap<>();
+    private static final Map<UUID, Reading> readings = new HashMap<>();
+
+    // What was last sent to a player's Geiger counter
+    private static final class GeigerState {
+        int level;
+        int distance;
+        // Intensity as it shows on the HUD bar, so changes too small to see aren't resent
+        int percent;
+        int sentTick;
+    }
+
+    // What the ore index said around a player, and how far they can move before it might change
+    private static final class Reading {
+        World world;
+        BlockPos pos;
+        int slack;
+        // Cube distance to the closest ore, Integer.MAX_VALUE if none within READING_RADIUS
+        int nearest;
+        // Straight-line distance for the Geiger counter, Integer.MAX_VALUE if none within GEIGER_RANGE
+        int distance;
+        // Intensity after shielding
+        float intensity;
+        // Whether some ore within CHECK_RADIUS isn't behind shielding
+        boolean exposed;
+    }
 
     public static void register() {
+        RadiationSources.register();
+        UraniumOreIndex.register();
+        RadiationShielding.register();
+        UraniumOreIndex.addChangeListener(UraniumRadiationHandler::onRadiationChanged);
+        RadiationShielding.addChangeListener(UraniumRadiationHandler::onRadiationChanged);
         ServerTickEvents.END_WORLD_TICK.register(UraniumRadiationHandler::onWorldTick);
+        // After the player pass, so players get first pick of the tick's rays
+        MobRadiationHandler.register();
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> onDisconnect(handler.getPlayer()));
+        // The indexes are rebuilt on reload, so every cached reading is stale
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> readings.clear());
+    }
+
+    @SuppressWarnings("UnstableApiUsage")
+    public static int getExposure(ServerPlayerEntity player) {
+        RadiationExposure exposure = player.getAttached(EXPOSURE);
+        return exposure == null ? 0 : exposure.valueAt(player.getServerWorld().getTime());
     }
 
     private static void onWorldTick(ServerWorld world) {
-        for (ServerPlayerEntity player : world.getPlayers()) {
-            UUID uuid = player.getUuid();
-            int exposure = exposureTicks.getOrDefault(uuid, 0);
+        RadiationScheduler.run(world, (player, elapsedTicks) -> evaluate(world, player, elapsedTicks));
+    }
 
-            boolean nearUranium = isNearUraniumOre(world, player.getBlockPos());
+    @SuppressWarnings("UnstableApiUsage")
+    private static void onDisconnect(ServerPlayerEntity player) {
+        UUID uuid = player.getUuid();
 
-            if (nearUranium) {
-                exposure = Math.min(MAX_EXPOSURE, exposure + 1);
-            } else {
-                exposure = Math.max(0, exposure - 2);
-            }
+        // Runs before the player is saved. Nobody gains exposure while logged off, but it
+        // keeps wearing off with world time
+        RadiationExposure exposure = player.getAttached(EXPOSURE);
+        if (exposure != null && exposure.rate() > 0) {
+            player.setAttached(EXPOSURE, exposure.withRate(player.getServerWorld().getTime(), EXPOSURE_DECAY_RATE));
+        }
 
-            if (exposure >= EXPOSURE_THRESHOLD_TICKS) {
-                applyRadiationEffects(player, exposure);
-            }
+        geigerStates.remove(uuid);
+        readings.remove(uuid);
+        RadiationScheduler.remove(uuid);
+    }
 
-            if (exposure == 0) {
-                exposureTicks.remove(uuid);
-            } else {
-                exposureTicks.put(uuid, exposure);
-            }
+    /**
+     * Updates one player's exposure and Geiger counter, covering every tick since they were
+     * last evaluated. Returns how many ticks until they need another look.
+     */
+    @SuppressWarnings("UnstableApiUsage")
+    private static int evaluate(ServerWorld world, ServerPlayerEntity player, int elapsedTicks) {
+        UUID uuid = player.getUuid();
+        int tick = world.getServer().getTicks();
+        long time = world.getTime();
+        RadiationExposure state = player.getAttached(EXPOSURE);
+        int exposure = state == null ? 0 : state.valueAt(time);
 
-            // Geiger counter logic
-            boolean holdingGeiger = player.getMainHandStack().isOf(ModItems.GEIGER_COUNTER)
-                    || player.getOffHandStack().isOf(ModItems.GEIGER_COUNTER);
+        boolean holdingGeiger = player.getMainHandStack().isOf(ModItems.GEIGER_COUNTER)
+                || player.getOffHandStack().isOf(ModItems.GEIGER_COUNTER);
+        boolean predicting = holdingGeiger && CustomCommands.isGeigerPredictionEnabledFor(player);
 
-            if (holdingGeiger) {
-                int level = getRadiationLevel(world, player.getBlockPos());
-                int distance = getNearestUraniumDistance(world, player.getBlockPos());
-                ServerPlayNetworking.send(player, new RadiationLevelPacket(level));
-                ServerPlayNetworking.send(player, new NearestUraniumPacket(distance));
-            }
+        // Clients that predict their own readings only need the exact distance for a correction
+        boolean needsDistance = holdingGeiger && (!predicting || isCorrectionDue(uuid, tick));
+        Reading reading = getReading(world, player, needsDistance);
+
+        boolean nearUranium = reading.exposed;
+        int rate = nearUranium ? EXPOSURE_GAIN_RATE : EXPOSURE_DECAY_RATE;
+
+        // The stored record keeps describing exposure until the player starts gaining or decaying instead
+        if (state == null ? nearUranium : state.rate() != rate) {
+            player.setAttached(EXPOSURE, new RadiationExposure(exposure, time, rate));
+        } else if (state != null && exposure == 0) {
+            player.removeAttached(EXPOSURE);
+        }
+
+        if (exposure >= EXPOSURE_THRESHOLD_TICKS) {
+            applyRadiationEffects(player, exposure, elapsedTicks, false);
+        } else if (state != null && state.valueAt(time - elapsedTicks) >= EXPOSURE_THRESHOLD_TICKS) {
+            // Dropped below the threshold since the last check: top the effects up one last
+            // time, so they wear off as long after leaving as they always have
+            applyRadiationEffects(player, state.valueAt(time - elapsedTicks), 0, true);
+        }
+
+        // Geiger counter logic
+        if (needsDistance) {
+            syncGeiger(player, reading, predicting, tick);
+        } else if (!holdingGeiger) {
+            // The client resets its counter when it's put away, so start fresh next time
+            geigerStates.remove(uuid);
         }
 
-        cleanupDisconnectedPlayers(world);
-    }
-
-    private static int getNearestUraniumDistance(ServerWorld world, BlockPos center) {
-        int nearest = Integer.MAX_VALUE;
-        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
-        for (int x = -10; x <= 10; x++) {
-            for (int y = -10; y <= 10; y++) {
-                for (int z = -10; z <= 10; z++) {
-                    mutablePos.set(center.getX() + x, center.getY() + y, center.getZ() + z);
-                    Block block = world.getBlockState(mutablePos).getBlock();
-                    if (block == ModBlocks.URANIUM_ORE || block == ModBlocks.URANIUM_DEEPSLATE_ORE) {
-                        int dist = (int) Math.sqrt(mutablePos.getSquaredDistance(center));
-                        if (dist < nearest) nearest = dist;
-                    }
-                }
+        // Players who could walk into range before their next check are watched closely too
+        if (exposure > 0 || (holdingGeiger && !predicting) || reading.nearest <= WATCH_RADIUS) {
+            return ACTIVE_INTERVAL;
+        }
+        return IDLE_INTERVAL;
+    }
+
+    // --- READINGS ---
+
+    /**
+     * Returns the player's cached reading if it still holds where they are now, or takes a new one.
+     * A reading holds until the player has moved far enough to cross one of the range
+     * thresholds, or until ore changes near where it was taken.
+     */
+    private static Reading getReading(ServerWorld world, ServerPlayerEntity player, boolean needsDistance) {
+        BlockPos pos = player.getBlockPos();
+        Reading reading = readings.get(player.getUuid());
+
+        if (reading != null && reading.world == world && chebyshevDistance(reading.pos, pos) < reading.slack) {
+            // The distance and intensity shown on the Geiger counter change with every step once
+            // ore is in range. With nothing in range, they only change when a threshold is crossed,
+            // unless some source reaches further than the Geiger range
+            boolean nothingInRange = reading.distance == Integer.MAX_VALUE
+                    && RadiationSources.getMaxRange() <= GEIGER_RANGE;
+            if (!needsDistance || nothingInRange || reading.pos.equals(pos)) {
+                return reading;
             }
         }
-        return nearest;
+
+        reading = takeReading(world, pos);
+        readings.put(player.getUuid(), reading);
+        return reading;
+    }
+
+    private static Reading takeReading(ServerWorld world, BlockPos pos) {
+        UraniumOreIndex index = UraniumOreIndex.get(world);
+        RadiationShielding shielding = RadiationShielding.get(world);
+        int nearest = index.nearestChebyshevDistance(pos, READING_RADIUS);
+
+        Reading reading = new Reading();
+        reading.world = world;
+        reading.pos = pos.toImmutable();
+        reading.nearest = nearest;
+        reading.distance = nearest <= GEIGER_RANGE ? index.nearestDistance(pos, GEIGER_RANGE) : Integer.MAX_VALUE;
+        // wasDeferred only describes a query that actually ran
+        boolean deferred = false;
+        if (nearest <= CHECK_RADIUS) {
+            reading.exposed = shielding.hasUnshieldedSourceWithin(world, index, pos, CHECK_RADIUS);
+            deferred = shielding.wasDeferred();
+        }
+        reading.intensity = shielding.intensityAt(world, index, pos, RadiationSources.getMaxRange());
+        deferred |= shielding.wasDeferred();
+
+        // Moving d blocks changes the cube distance to the nearest ore by at most d, so the
+        // reading holds until the player is close enough to a threshold to cross it.
+        // No ore in the reading radius counts as ore just outside it.
+        int effective = Math.min(nearest, READING_RADIUS + 1);
+        int slack = Integer.MAX_VALUE;
+        for (int threshold : THRESHOLDS) {
+            slack = Math.min(slack, effective <= threshold ? threshold - effective + 1 : effective - threshold);
+        }
+        // Out of rays this tick, so part of the reading is a guess: take a proper one next time
+        reading.slack = deferred ? 0 : slack;
+        return reading;
     }
 
-    private static int getRadiationLevel(ServerWorld world, BlockPos center) {
-        if (isNearUraniumOreInRadius(world, center, 4)) return 2;
-        if (isNearUraniumOreInRadius(world, center, 10)) return 1;
+    // Ore was placed or removed, or shielding changed on the way from some ore to a player
+    private static void onRadiationChanged(World world, BlockPos pos) {
+        // Client worlds have their own index for Geiger prediction, and run on another thread
+        if (world.isClient()) return;
+
+        // Any reading that could see this block is stale
+        int reach = Math.max(READING_RADIUS, RadiationSources.getMaxRange());
+        readings.values().removeIf(reading -> reading.world == world
+                && chebyshevDistance(reading.pos, pos) <= reach);
+    }
+
+    private static int chebyshevDistance(BlockPos a, BlockPos b) {
+        return Math.max(Math.abs(a.getX() - b.getX()),
+                Math.max(Math.abs(a.getY() - b.getY()), Math.abs(a.getZ() - b.getZ())));
+    }
+
+    /**
+     * Geiger level for a given cube distance to the nearest ore. Shared with the client,
+     * which uses it to predict readings from its own chunks.
+     */
+    public static int getGeigerLevel(int nearest) {
+        if (nearest <= CLOSE_RANGE) return 2;
+        if (nearest <= GEIGER_RANGE) return 1;
         return 0;
     }
 
-    private static boolean isNearUraniumOreInRadius(ServerWorld world, BlockPos center, int radius) {
-        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
-        for (int x = -radius; x <= radius; x++) {
-            for (int y = -radius; y <= radius; y++) {
-                for (int z = -radius; z <= radius; z++) {
-                    mutablePos.set(center.getX() + x, center.getY() + y, center.getZ() + z);
-                    Block block = world.getBlockState(mutablePos).getBlock();
-                    if (block == ModBlocks.URANIUM_ORE || block == ModBlocks.URANIUM_DEEPSLATE_ORE) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    /**
+     * How full the Geiger counter's bar is, 0-100, for a given intensity. The scale is
+     * logarithmic: a single ore at the edge of Geiger range barely registers, and the bar is
+     * full at about a hundred ore blocks' worth of radiation up close.
+     */
+    public static int getIntensityPercent(float intensity) {
+        if (intensity <= 0.0f) return 0;
+        double scaled = (Math.log10(intensity) + 2.5) / 4.5;
+        return (int) Math.round(Math.max(0.0, Math.min(1.0, scaled)) * 100);
     }
 
-    private static boolean isNearUraniumOre(ServerWorld world, BlockPos center) {
-        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+    private static boolean isCorrectionDue(UUID uuid, int tick) {
+        GeigerState state = geigerStates.get(uuid);
+        return state == null || tick - state.sentTick >= GEIGER_CORRECTION_TICKS;
+    }
 
-        for (int x = -CHECK_RADIUS; x <= CHECK_RADIUS; x++) {
-            for (int y = -CHECK_RADIUS; y <= CHECK_RADIUS; y++) {
-                for (int z = -CHECK_RADIUS; z <= CHECK_RADIUS; z++) {
-                    mutablePos.set(center.getX() + x, center.getY() + y, center.getZ() + z);
-                    Block block = world.getBlockState(mutablePos).getBlock();
+    private static void syncGeiger(ServerPlayerEntity player, Reading reading, boolean predicting, int tick) {
+        int level = getGeigerLevel(reading.nearest);
+        int distance = quantizeDistance(reading.distance);
+        int percent = getIntensityPercent(reading.intensity);
 
-                    if (block == ModBlocks.URANIUM_ORE || block == ModBlocks.URANIUM_DEEPSLATE_ORE) {
-                        return true;
-                    }
-                }
-            }
+        GeigerState state = geigerStates.get(player.getUuid());
+        if (state == null) {
+            state = new GeigerState();
+            geigerStates.put(player.getUuid(), state);
+        } else if (predicting) {
+            if (tick - state.sentTick < GEIGER_CORRECTION_TICKS) return;
+        } else if (state.level == level && state.distance == distance && state.percent == percent
+                && tick - state.sentTick < GEIGER_HEARTBEAT_TICKS) {
+            return;
         }
 
-        return false;
+        state.level = level;
+        state.distance = distance;
+        state.percent = percent;
+        state.sentTick = tick;
+        ServerPlayNetworking.send(player, new GeigerStatePacket(level, distance, reading.intensity));
     }
 
-    private static void applyRadiationEffects(ServerPlayerEntity player, int exposure) {
+    static int quantizeDistance(int distance) {
+        if (distance == Integer.MAX_VALUE) return distance;
+        return distance - distance % GEIGER_DISTANCE_STEP;
+    }
+
+    static void applyRadiationEffects(LivingEntity entity, int exposure, int elapsedTicks, boolean force) {
         int amplifier = exposure >= 240 ? 1 : 0;
 
-        player.addStatusEffect(new StatusEffectInstance(StatusEffects.SLOWNESS, 80, amplifier, true, true));
-        player.addStatusEffect(new StatusEffectInstance(StatusEffects.WEAKNESS, 80, amplifier, true, true));
-        player.addStatusEffect(new StatusEffectInstance(StatusEffects.NAUSEA, 80, 0, true, true));
+        refreshEffect(entity, StatusEffects.SLOWNESS, amplifier, force);
+        refreshEffect(entity, StatusEffects.WEAKNESS, amplifier, force);
+        refreshEffect(entity, StatusEffects.NAUSEA, 0, force);
 
-        if (player.age % 40 == 0) {
-            player.damage(player.getDamageSources().magic(), 1.0f);
+        // Damage every 40 ticks, even if that tick fell between two evaluations
+        if (Math.floorDiv(entity.age, 40) != Math.floorDiv(entity.age - elapsedTicks, 40)) {
+            entity.damage(entity.getDamageSources().magic(), 1.0f);
         }
     }
 
-    private static void cleanupDisconnectedPlayers(ServerWorld world) {
-        Iterator<UUID> iterator = exposureTicks.keySet().iterator();
-        while (iterator.hasNext()) {
-            UUID uuid = iterator.next();
-            if (world.getServer().getPlayerManager().getPlayer(uuid) == null) {
-                iterator.remove();
-            }
+    // Every addStatusEffect call syncs the effect to the client and recalculates attributes,
+    // so effects are only re-added when missing, too weak, or about to run out
+    private static void refreshEffect(LivingEntity entity, RegistryEntry<StatusEffect> effect, int amplifier, boolean force) {
+        StatusEffectInstance current = entity.getStatusEffect(effect);
+        if (!force && current != null && current.getAmplifier() >= amplifier
+                && current.getDuration() > EFFECT_REFRESH_TICKS) {
+            return;
         }
+        entity.addStatusEffect(new StatusEffectInstance(effect, EFFECT_DURATION_TICKS, amplifier, true, true));
     }
 }
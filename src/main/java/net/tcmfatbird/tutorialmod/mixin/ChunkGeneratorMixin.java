@@ -0,0 +1,24 @@
+package net.tcmfatbird.tutorialmod.mixin;
+
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.StructureAccessor;
+import net.minecraft.world.gen.chunk.ChunkGenerator;
+import net.tcmfatbird.tutorialmod.feature.OrePlacements;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ChunkGenerator.class)
+public abstract class ChunkGeneratorMixin {
+	@Inject(at = @At("HEAD"), method = "generateFeatures")
+	private void tutorialmod$onGenerateFeatures(StructureWorldAccess world, Chunk chunk, StructureAccessor structureAccessor, CallbackInfo info) {
+		OrePlacements.start(chunk);
+	}
+
+	@Inject(at = @At("RETURN"), method = "generateFeatures")
+	private void tutorialmod$afterGenerateFeatures(StructureWorldAccess world, Chunk chunk, StructureAccessor structureAccessor, CallbackInfo info) {
+		OrePlacements.finish(chunk);
+	}
+}
@@ -0,0 +1,30 @@
+package net.tcmfatbird.tutorialmod.mixin;
+
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.llamalad7.mixinextras.sugar.Local;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.gen.feature.OreFeature;
+import net.tcmfatbird.tutorialmod.feature.OrePlacements;
+import net.tcmfatbird.tutorialmod.feature.RadiationSources;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+
+@Mixin(OreFeature.class)
+public abstract class OreFeatureMixin {
+	// Ore veins are written straight into chunk sections, past any chunk or world hook
+	@WrapOperation(method = "generateVeinPart", at = @At(value = "INVOKE",
+			target = "Lnet/minecraft/world/chunk/ChunkSection;setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;"))
+	private BlockState tutorialmod$recordOre(ChunkSection section, int x, int y, int z, BlockState state, boolean lock,
+											 Operation<BlockState> original,
+											 @Local(argsOnly = true) StructureWorldAccess world, @Local BlockPos.Mutable pos) {
+		BlockState oldState = original.call(section, x, y, z, state, lock);
+		if (RadiationSources.isSource(state)) {
+			OrePlacements.record(world.getChunk(pos), pos, true);
+		}
+		return oldState;
+	}
+}
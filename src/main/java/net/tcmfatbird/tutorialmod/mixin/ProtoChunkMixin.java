@@ -0,0 +1,22 @@
+package net.tcmfatbird.tutorialmod.mixin;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ProtoChunk;
+import net.tcmfatbird.tutorialmod.feature.OrePlacements;
+import net.tcmfatbird.tutorialmod.feature.RadiationSources;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(ProtoChunk.class)
+public abstract class ProtoChunkMixin {
+	// Structures and most other features place blocks through here while the chunk generates
+	@Inject(at = @At("RETURN"), method = "setBlockState")
+	private void tutorialmod$onSetBlockState(BlockPos pos, BlockState state, boolean moved, CallbackInfoReturnable<BlockState> info) {
+		if (RadiationSources.isSource(state)) {
+			OrePlacements.record((ProtoChunk) (Object) this, pos, true);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package net.tcmfatbird.tutorialmod.mixin;
+
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ServerChunkLoadingManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+@Mixin(ServerChunkLoadingManager.class)
+public interface ServerChunkLoadingManagerAccessor {
+	// Every chunk the world has loaded, for indexes built after the chunks came in
+	@Invoker("entryIterator")
+	Iterable<ChunkHolder> tutorialmod$entryIterator();
+}
@@ -0,0 +1,27 @@
+package net.tcmfatbird.tutorialmod.mixin;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+import net.tcmfatbird.tutorialmod.util.BlockChangeTracker;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(WorldChunk.class)
+public abstract class WorldChunkMixin {
+	@Shadow
+	public abstract World getWorld();
+
+	@Inject(at = @At("RETURN"), method = "setBlockState")
+	private void tutorialmod$onSetBlockState(BlockPos pos, BlockState state, boolean moved, CallbackInfoReturnable<BlockState> info) {
+		// setBlockState returns the previous state, or null if nothing changed
+		BlockState oldState = info.getReturnValue();
+		if (oldState != null) {
+			BlockChangeTracker.onBlockChanged(getWorld(), pos, oldState, state);
+		}
+	}
+}
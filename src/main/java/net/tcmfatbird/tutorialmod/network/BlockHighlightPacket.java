@@ -1,30 +1,73 @@
 package net.tcmfatbird.tutorialmod.network;
 
+import io.netty.handler.codec.DecoderException;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
-import net.minecraft.network.codec.PacketCodecs;
 import net.minecraft.network.packet.CustomPayload;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
 
-public record BlockHighlightPacket(BlockPos pos) implements CustomPayload {
+// positions = nearest first, empty clears the highlight
+// partial = the search skipped chunks that weren't loaded, so a closer block may exist
+public record BlockHighlightPacket(List<BlockPos> positions, boolean partial) implements CustomPayload {
+
+    public static final int MAX_POSITIONS = 256;
 
     public static final Id<BlockHighlightPacket> ID =
             new Id<>(Identifier.of("tutorialmod", "block_highlight"));
 
     public static final PacketCodec<RegistryByteBuf, BlockHighlightPacket> CODEC =
-            BlockPos.PACKET_CODEC
-                    .collect(PacketCodecs::optional)
-                    .xmap(
-                            opt -> new BlockHighlightPacket(opt.orElse(null)),
-                            packet -> Optional.ofNullable(packet.pos())
-                    )
-                    .cast();
+            PacketCodec.of(BlockHighlightPacket::write, BlockHighlightPacket::read);
+
+    // The first position in full, then each one as a zigzag varint offset from the one
+    // before, which is a byte or two per axis for blocks of the same vein
+    private void write(RegistryByteBuf buf) {
+        buf.writeVarInt(positions.size());
+        BlockPos previous = null;
+        for (BlockPos pos : positions) {
+            if (previous == null) {
+                buf.writeBlockPos(pos);
+            } else {
+                buf.writeVarInt(zigzag(pos.getX() - previous.getX()));
+                buf.writeVarInt(zigzag(pos.getY() - previous.getY()));
+                buf.writeVarInt(zigzag(pos.getZ() - previous.getZ()));
+            }
+            previous = pos;
+        }
+        buf.writeBoolean(partial);
+    }
+
+    private static BlockHighlightPacket read(RegistryByteBuf buf) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > MAX_POSITIONS) {
+            throw new DecoderException("Too many highlighted blocks: " + count);
+        }
+
+        List<BlockPos> positions = new ArrayList<>(count);
+        BlockPos previous = null;
+        for (int i = 0; i < count; i++) {
+            BlockPos pos = previous == null
+                    ? buf.readBlockPos()
+                    : previous.add(unzigzag(buf.readVarInt()), unzigzag(buf.readVarInt()), unzigzag(buf.readVarInt()));
+            positions.add(pos);
+            previous = pos;
+        }
+        return new BlockHighlightPacket(positions, buf.readBoolean());
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
 
     @Override
     public Id<? extends CustomPayload> getId() {
         return ID;
     }
-}
\ No newline at end of file
+}
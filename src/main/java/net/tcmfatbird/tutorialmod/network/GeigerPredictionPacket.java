@@ -0,0 +1,24 @@
+package net.tcmfatbird.tutorialmod.network;
+
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+// enabled = the client works out its Geiger readings itself, the server only sends occasional corrections
+public record GeigerPredictionPacket(boolean enabled) implements CustomPayload {
+
+    public static final Id<GeigerPredictionPacket> ID =
+            new Id<>(Identifier.of("tutorialmod", "geiger_prediction"));
+
+    public static final PacketCodec<RegistryByteBuf, GeigerPredictionPacket> CODEC =
+            PacketCodecs.BOOL
+                    .xmap(GeigerPredictionPacket::new, GeigerPredictionPacket::enabled)
+                    .cast();
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,30 @@
+package net.tcmfatbird.tutorialmod.network;
+
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+// level: 0 = none, 1 = far (10 blocks), 2 = close (4 blocks)
+// distance: nearest ore in blocks, Integer.MAX_VALUE if there is none in range
+// intensity: summed strength / distance² of every source in range
+public record GeigerStatePacket(int level, int distance, float intensity) implements CustomPayload {
+
+    public static final Id<GeigerStatePacket> ID =
+            new Id<>(Identifier.of("tutorialmod", "geiger_state"));
+
+    // "No ore" goes over the wire as 0 and everything else shifted up by one, so level and distance fit in a byte each
+    public static final PacketCodec<RegistryByteBuf, GeigerStatePacket> CODEC =
+            PacketCodec.tuple(
+                    PacketCodecs.VAR_INT, GeigerStatePacket::level,
+                    PacketCodecs.VAR_INT, packet -> packet.distance() == Integer.MAX_VALUE ? 0 : packet.distance() + 1,
+                    PacketCodecs.FLOAT, GeigerStatePacket::intensity,
+                    (level, distance, intensity) -> new GeigerStatePacket(level, distance == 0 ? Integer.MAX_VALUE : distance - 1, intensity)
+            );
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,26 @@
+package net.tcmfatbird.tutorialmod.network;
+
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+import net.tcmfatbird.tutorialmod.feature.RadiationSources;
+
+import java.util.List;
+
+// The server's radiation source table, sent on join and after every datapack reload
+public record RadiationSourcesPacket(List<RadiationSources.Source> sources) implements CustomPayload {
+
+    public static final Id<RadiationSourcesPacket> ID =
+            new Id<>(Identifier.of("tutorialmod", "radiation_sources"));
+
+    public static final PacketCodec<RegistryByteBuf, RadiationSourcesPacket> CODEC =
+            RadiationSources.Source.PACKET_CODEC.collect(PacketCodecs.toList())
+                    .xmap(RadiationSourcesPacket::new, RadiationSourcesPacket::sources);
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,159 @@
+package net.tcmfatbird.tutorialmod.util;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects every block change in loaded chunks (fed by WorldChunkMixin) and hands them to
+ * listeners in one batch per world tick, so indexes and caches can follow the world instead
+ * of rescanning it. Changes are stored as parallel primitive arrays that are reused from tick
+ * to tick, so recording one doesn't allocate.
+ * <p>
+ * Server worlds are flushed at the end of their tick, client worlds from GeigerCounterClient.
+ * A world is also flushed before any of its chunks unload, so listeners always see a change
+ * while its chunk is still there.
+ */
+public class BlockChangeTracker {
+
+    private static final Map<World, Changes> BUFFERS = new ConcurrentHashMap<>();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    @FunctionalInterface
+    public interface Listener {
+        void onBlockChanges(World world, Changes changes);
+    }
+
+    /**
+     * One world's changes since the last flush, in the order they happened. A block that
+     * changed twice shows up twice. Only valid during the listener call.
+     */
+    public static final class Changes {
+        private static final int INITIAL_CAPACITY = 64;
+        // After a batch this much bigger than that (a /fill, say), the arrays go back to the start
+        private static final int SHRINK_ABOVE = 4096;
+
+        private long[] sections = new long[INITIAL_CAPACITY];
+        // Packed section-local positions: (y << 8) | (z << 4) | x
+        private short[] positions = new short[INITIAL_CAPACITY];
+        private int[] oldStates = new int[INITIAL_CAPACITY];
+        private int[] newStates = new int[INITIAL_CAPACITY];
+        private int size = 0;
+
+        private void add(BlockPos pos, BlockState oldState, BlockState newState) {
+            if (size == sections.length) {
+                sections = Arrays.copyOf(sections, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+                oldStates = Arrays.copyOf(oldStates, size * 2);
+                newStates = Arrays.copyOf(newStates, size * 2);
+            }
+            sections[size] = ChunkSectionPos.toLong(pos);
+            positions[size] = (short) (((pos.getY() & 15) << 8) | ((pos.getZ() & 15) << 4) | (pos.getX() & 15));
+            oldStates[size] = Block.getRawIdFromState(oldState);
+            newStates[size] = Block.getRawIdFromState(newState);
+            size++;
+        }
+
+        private void reset() {
+            if (sections.length > SHRINK_ABOVE) {
+                sections = new long[INITIAL_CAPACITY];
+                positions = new short[INITIAL_CAPACITY];
+                oldStates = new int[INITIAL_CAPACITY];
+                newStates = new int[INITIAL_CAPACITY];
+            }
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * ChunkSectionPos.asLong of the section the change is in.
+         */
+        public long sectionKey(int i) {
+            return sections[i];
+        }
+
+        public int localIndex(int i) {
+            return positions[i];
+        }
+
+        public int oldStateId(int i) {
+            return oldStates[i];
+        }
+
+        public int newStateId(int i) {
+            return newStates[i];
+        }
+
+        public BlockState oldState(int i) {
+            return Block.getStateFromRawId(oldStates[i]);
+        }
+
+        public BlockState newState(int i) {
+            return Block.getStateFromRawId(newStates[i]);
+        }
+
+        /**
+         * Writes the world position of change i into pos and returns it.
+         */
+        public BlockPos.Mutable getPos(int i, BlockPos.Mutable pos) {
+            long section = sections[i];
+            int packed = positions[i];
+            return pos.set(
+                    ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(section)) + (packed & 15),
+                    ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(section)) + ((packed >> 8) & 15),
+                    ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(section)) + ((packed >> 4) & 15));
+        }
+    }
+
+    /**
+     * Register before anything that reads indexes kept by listeners at the end of a tick or
+     * on chunk unload, since Fabric runs callbacks in registration order.
+     */
+    public static void register() {
+        ServerTickEvents.END_WORLD_TICK.register(BlockChangeTracker::flush);
+        ServerChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> flush(world));
+        ServerWorldEvents.UNLOAD.register((server, world) -> remove(world));
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Called from WorldChunkMixin whenever a block in a loaded chunk changes.
+     */
+    public static void onBlockChanged(World world, BlockPos pos, BlockState oldState, BlockState newState) {
+        BUFFERS.computeIfAbsent(world, w -> new Changes()).add(pos, oldState, newState);
+    }
+
+    /**
+     * Hands everything recorded for the world so far to the listeners.
+     */
+    public static void flush(World world) {
+        Changes changes = BUFFERS.get(world);
+        if (changes == null || changes.size == 0) return;
+
+        for (Listener listener : LISTENERS) {
+            listener.onBlockChanges(world, changes);
+        }
+        changes.reset();
+    }
+
+    public static void remove(World world) {
+        BUFFERS.remove(world);
+    }
+}
@@ -0,0 +1,320 @@
+package net.tcmfatbird.tutorialmod.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Shared block search used by the highlight and radiation features.
+ * Before reading any blocks from a chunk section it checks the section's palette,
+ * so sections that can't contain the target (all stone, all air, ...) are skipped
+ * without a single getBlockState call.
+ */
+public class BlockSearch {
+
+    /**
+     * Supplies the block states of a chunk section, or null if the section is
+     * missing or only contains air.
+     */
+    @FunctionalInterface
+    public interface SectionSource {
+        @Nullable
+        PalettedContainer<BlockState> getSection(int sectionX, int sectionY, int sectionZ);
+    }
+
+    @FunctionalInterface
+    public interface MatchVisitor {
+        void visit(int x, int y, int z, BlockState state);
+    }
+
+    /**
+     * A read-only copy of the sections a search needs. Only chunks that were already
+     * loaded are copied; if any chunk in the area wasn't, the snapshot is incomplete.
+     */
+    public static final class Snapshot implements SectionSource {
+        private final Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections;
+        private final boolean complete;
+
+        private Snapshot(Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections, boolean complete) {
+            this.sections = sections;
+            this.complete = complete;
+        }
+
+        @Override
+        @Nullable
+        public PalettedContainer<BlockState> getSection(int sectionX, int sectionY, int sectionZ) {
+            return sections.get(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Copies every section of the cube around center that could hold a match, so a
+     * search can run off the server thread against a frozen view of the world.
+     * Never loads or generates chunks: missing ones are skipped and mark the snapshot incomplete.
+     */
+    public static Snapshot snapshot(ServerWorld world, BlockPos center, int radius, Predicate<BlockState> predicate) {
+        ServerChunkManager chunkManager = world.getChunkManager();
+        Long2ObjectOpenHashMap<PalettedContainer<BlockState>> copies = new Long2ObjectOpenHashMap<>();
+        boolean complete = true;
+
+        int minSectionY = Math.max((center.getY() - radius) >> 4, world.getBottomSectionCoord());
+        int maxSectionY = Math.min((center.getY() + radius) >> 4, world.getTopSectionCoord() - 1);
+
+        for (int sectionX = (center.getX() - radius) >> 4; sectionX <= (center.getX() + radius) >> 4; sectionX++) {
+            for (int sectionZ = (center.getZ() - radius) >> 4; sectionZ <= (center.getZ() + radius) >> 4; sectionZ++) {
+                WorldChunk chunk = chunkManager.getWorldChunk(sectionX, sectionZ);
+                if (chunk == null) {
+                    complete = false;
+                    continue;
+                }
+
+                for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+                    ChunkSection section = chunk.getSection(world.sectionCoordToIndex(sectionY));
+                    if (section.isEmpty()) continue;
+
+                    PalettedContainer<BlockState> states = section.getBlockStateContainer();
+                    if (mayContain(states, predicate)) {
+                        copies.put(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ), states.copy());
+                    }
+                }
+            }
+        }
+
+        return new Snapshot(copies, complete);
+    }
+
+    /**
+     * True if the palette says this section could hold a matching state.
+     */
+    public static boolean mayContain(@Nullable PalettedContainer<BlockState> section, Predicate<BlockState> predicate) {
+        return section != null && section.hasAny(predicate);
+    }
+
+    /**
+     * Visits every matching block in one section, using local (0-15) coordinates.
+     */
+    public static void forEachMatchInSection(@Nullable PalettedContainer<BlockState> section,
+                                             Predicate<BlockState> predicate, MatchVisitor visitor) {
+        if (!mayContain(section, predicate)) return;
+        scan(section, predicate, visitor);
+    }
+
+    /**
+     * Finds the closest matching block to center inside the cube of the given radius,
+     * ignoring center itself. Ties are broken towards the lowest x, then y, then z, like a
+     * plain cube scan.
+     */
+    @Nullable
+    public static BlockPos findNearest(SectionSource source, BlockPos center, int radius, Predicate<BlockState> predicate) {
+        List<BlockPos> nearest = findNearest(source, center, radius, predicate, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * Finds the count closest matching blocks to center inside the cube of the given radius,
+     * ignoring center itself, nearest first. Sections are visited nearest-first and the search
+     * stops as soon as no remaining section can hold anything closer than the worst block kept.
+     */
+    public static List<BlockPos> findNearest(SectionSource source, BlockPos center, int radius,
+                                             Predicate<BlockState> predicate, int count) {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+        int minX = cx - radius, minY = cy - radius, minZ = cz - radius;
+        int maxX = cx + radius, maxY = cy + radius, maxZ = cz + radius;
+
+        int minSectionX = minX >> 4, minSectionY = minY >> 4, minSectionZ = minZ >> 4;
+        int sizeX = (maxX >> 4) - minSectionX + 1;
+        int sizeY = (maxY >> 4) - minSectionY + 1;
+        int sizeZ = (maxZ >> 4) - minSectionZ + 1;
+
+        // Each entry is (closest possible squared distance << 32) | section index, so sorting
+        // the array orders the sections nearest-first without boxing anything
+        long[] order = new long[sizeX * sizeY * sizeZ];
+        for (int ix = 0; ix < sizeX; ix++) {
+            int baseX = (minSectionX + ix) << 4;
+            int dx = axisDistance(cx, Math.max(minX, baseX), Math.min(maxX, baseX + 15));
+            for (int iy = 0; iy < sizeY; iy++) {
+                int baseY = (minSectionY + iy) << 4;
+                int dy = axisDistance(cy, Math.max(minY, baseY), Math.min(maxY, baseY + 15));
+                for (int iz = 0; iz < sizeZ; iz++) {
+                    int baseZ = (minSectionZ + iz) << 4;
+                    int dz = axisDistance(cz, Math.max(minZ, baseZ), Math.min(maxZ, baseZ + 15));
+                    int index = (ix * sizeY + iy) * sizeZ + iz;
+                    order[index] = ((long) (dx * dx + dy * dy + dz * dz) << 32) | index;
+                }
+            }
+        }
+        Arrays.sort(order);
+
+        NearestBlocks nearest = new NearestBlocks(count);
+
+        for (long entry : order) {
+            // Nothing in this or any later section can beat what we already have
+            if ((int) (entry >>> 32) > nearest.worstDistance()) break;
+
+            int index = (int) entry;
+            int sectionX = minSectionX + index / (sizeY * sizeZ);
+            int sectionY = minSectionY + (index / sizeZ) % sizeY;
+            int sectionZ = minSectionZ + index % sizeZ;
+
+            PalettedContainer<BlockState> section = source.getSection(sectionX, sectionY, sectionZ);
+            if (!mayContain(section, predicate)) continue;
+
+            int baseX = sectionX << 4;
+            int baseY = sectionY << 4;
+            int baseZ = sectionZ << 4;
+            int fromX = Math.max(minX, baseX) - baseX, toX = Math.min(maxX, baseX + 15) - baseX;
+            int fromY = Math.max(minY, baseY) - baseY, toY = Math.min(maxY, baseY + 15) - baseY;
+            int fromZ = Math.max(minZ, baseZ) - baseZ, toZ = Math.min(maxZ, baseZ + 15) - baseZ;
+
+            for (int y = fromY; y <= toY; y++) {
+                int dy = baseY + y - cy;
+                for (int z = fromZ; z <= toZ; z++) {
+                    int dz = baseZ + z - cz;
+                    for (int x = fromX; x <= toX; x++) {
+                        if (!predicate.test(section.get(x, y, z))) continue;
+
+                        int dx = baseX + x - cx;
+                        int dist = dx * dx + dy * dy + dz * dz;
+                        if (dist != 0) nearest.offer(baseX + x, baseY + y, baseZ + z, dist);
+                    }
+                }
+            }
+        }
+
+        return nearest.toList();
+    }
+
+    private static int axisDistance(int value, int min, int max) {
+        if (value < min) return min - value;
+        if (value > max) return value - max;
+        return 0;
+    }
+
+    private static boolean isBefore(int x, int y, int z, int otherX, int otherY, int otherZ) {
+        if (x != otherX) return x < otherX;
+        if (y != otherY) return y < otherY;
+        return z < otherZ;
+    }
+
+    /**
+     * The closest blocks offered so far, at most capacity of them, kept as a max-heap: the
+     * root is the worst one kept, so a new block only has to beat the root to get in.
+     * Equally close blocks are ordered by lowest x, then y, then z.
+     */
+    public static final class NearestBlocks {
+        private final int[] dists;
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] zs;
+        private int size = 0;
+
+        public NearestBlocks(int capacity) {
+            dists = new int[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+            zs = new int[capacity];
+        }
+
+        /**
+         * Squared distance a block has to be within to still get in, until the heap is full.
+         */
+        public int worstDistance() {
+            return size < dists.length ? Integer.MAX_VALUE : dists[0];
+        }
+
+        public void offer(int x, int y, int z, int dist) {
+            if (dists.length == 0) return;
+            if (size < dists.length) {
+                // Sift the new block up from the bottom
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >> 1;
+                    if (!worse(dist, x, y, z, parent)) break;
+                    move(parent, i);
+                    i = parent;
+                }
+                set(i, dist, x, y, z);
+                return;
+            }
+
+            // Full: only something better than the worst kept gets in, replacing it
+            if (!worse(dists[0], xs[0], ys[0], zs[0], dist, x, y, z)) return;
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && worse(dists[child + 1], xs[child + 1], ys[child + 1], zs[child + 1], child)) child++;
+                if (!worse(dists[child], xs[child], ys[child], zs[child], dist, x, y, z)) break;
+                move(child, i);
+                i = child;
+            }
+            set(i, dist, x, y, z);
+        }
+
+        public List<BlockPos> toList() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> worse(dists[a], xs[a], ys[a], zs[a], b) ? 1 : worse(dists[b], xs[b], ys[b], zs[b], a) ? -1 : 0);
+
+            List<BlockPos> list = new ArrayList<>(size);
+            for (int i : order) {
+                list.add(new BlockPos(xs[i], ys[i], zs[i]));
+            }
+            return list;
+        }
+
+        // Whether the block (dist, x, y, z) ranks behind the one stored at i
+        private boolean worse(int dist, int x, int y, int z, int i) {
+            return worse(dist, x, y, z, dists[i], xs[i], ys[i], zs[i]);
+        }
+
+        private static boolean worse(int dist, int x, int y, int z, int otherDist, int otherX, int otherY, int otherZ) {
+            if (dist != otherDist) return dist > otherDist;
+            return isBefore(otherX, otherY, otherZ, x, y, z);
+        }
+
+        private void move(int from, int to) {
+            set(to, dists[from], xs[from], ys[from], zs[from]);
+        }
+
+        private void set(int i, int dist, int x, int y, int z) {
+            dists[i] = dist;
+            xs[i] = x;
+            ys[i] = y;
+            zs[i] = z;
+        }
+    }
+
+    private static void scan(PalettedContainer<BlockState> section, Predicate<BlockState> predicate, MatchVisitor visitor) {
+        // y, z, x order walks the section's storage sequentially
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    BlockState state = section.get(x, y, z);
+                    if (predicate.test(state)) {
+                        visitor.visit(x, y, z, state);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -9,13 +9,10 @@ import net.minecraft.util.Formatting;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ChatFormatter {
 
     private static final Map<Character, Formatting> MAP = new HashMap<>();
-    private static final Pattern GRADIENT_PATTERN = Pattern.compile("&gradient\\{([0-9A-Fa-f]{6})-([0-9A-Fa-f]{6})}(.+?)(?=&(?!#)|$)");
 
     static {
         MAP.put('0', Formatting.BLACK);
@@ -51,17 +48,24 @@ public class ChatFormatter {
         boolean strikethrough = false;
         boolean obfuscated = false;
 
+        // Style with every modifier but the color, rebuilt only when a modifier changes
+        private Style formats = null;
+
         Style build() {
-            Style style = Style.EMPTY.withColor(color);
-            if (bold) style = style.withBold(true);
-            if (italic) style = style.withItalic(true);
-            if (underline) style = style.withUnderline(true);
-            if (strikethrough) style = style.withStrikethrough(true);
-            if (obfuscated) style = style.withObfuscated(true);
-            return style;
+            if (formats == null) {
+                Style style = Style.EMPTY;
+                if (bold) style = style.withBold(true);
+                if (italic) style = style.withItalic(true);
+                if (underline) style = style.withUnderline(true);
+                if (strikethrough) style = style.withStrikethrough(true);
+                if (obfuscated) style = style.withObfuscated(true);
+                formats = style;
+            }
+            return formats.withColor(color);
         }
 
         void reset() {
+            formats = null;
             color = TextColor.fromRgb(0xFFFFFF);
             bold = false;
             italic = false;
@@ -71,6 +75,7 @@ public class ChatFormatter {
         }
 
         void applyFormatting(Formatting f) {
+            if (!f.isColor()) formats = null;
             switch (f) {
                 case BOLD:          bold = true;          break;
                 case ITALIC:        italic = true;        break;
@@ -86,156 +91,274 @@ public class ChatFormatter {
         }
     }
 
+    // Markdown delimiters found by findMarkdown, stored per character index
+    private static final byte BOLD_OPEN = 1;
+    private static final byte BOLD_CLOSE = 2;
+    private static final byte BOLD_SECOND_STAR = 3;
+    private static final byte ITALIC_OPEN = 4;
+    private static final byte ITALIC_CLOSE = 5;
+
+    private static final String GRADIENT_PREFIX = "&gradient{";
+    // &gradient{RRGGBB-RRGGBB}
+    private static final int GRADIENT_HEADER_LENGTH = GRADIENT_PREFIX.length() + 14;
+
     public static MutableText parse(String input, boolean allowMagic) {
-        // Process markdown-style formatting first
-        input = processMarkdown(input);
-        // Then process gradients
-        input = processGradients(input);
-
-        MutableText text = Text.empty();
-        StyleState state = new StyleState();
-
-        for (int i = 0; i < input.length(); i++) {
-            char c = input.charAt(i);
-
-            if (c == '&' && i + 1 < input.length()) {
-                char next = input.charAt(i + 1);
-
-                // Hex color code: &#RRGGBB
-                if (next == '#' && i + 7 < input.length()) {
-                    String hexCode = input.substring(i + 2, i + 8);
-                    try {
-                        int color = Integer.parseInt(hexCode, 16);
-                        state.color = TextColor.fromRgb(color);
-                        i += 7;
-                        continue;
-                    } catch (NumberFormatException e) {
-                        // Invalid hex, fall through to normal text
-                    }
-                }
+        Compiler compiler = new Compiler(allowMagic);
+        compiler.compile(input, findMarkdown(input));
+        return compiler.finish();
+    }
 
-                // Standard formatting/color code
-                Formatting f = MAP.get(Character.toLowerCase(next));
-                if (f != null) {
-                    if (!allowMagic && f == Formatting.OBFUSCATED) {
-                        i++;
-                        continue;
-                    }
-                    state.applyFormatting(f);
-                    i++;
-                    continue;
-                }
+    /**
+     * Pairs up ** and * delimiters the way the old regex passes did: ** pairs first,
+     * then single * pairs among the stars that are left. Returns null if there are none.
+     */
+    private static byte[] findMarkdown(String input) {
+        if (input.indexOf('*') < 0) return null;
+
+        int length = input.length();
+        byte[] markers = new byte[length];
+
+        int i = 0;
+        while (i + 1 < length) {
+            if (input.charAt(i) == '*' && input.charAt(i + 1) == '*') {
+                int close = input.indexOf("**", i + 3);
+                if (close < 0) break;
+
+                markers[i] = BOLD_OPEN;
+                markers[i + 1] = BOLD_SECOND_STAR;
+                markers[close] = BOLD_CLOSE;
+                markers[close + 1] = BOLD_SECOND_STAR;
+                i = close + 2;
+                continue;
             }
+            i++;
+        }
 
-            text.append(Text.literal(String.valueOf(c)).setStyle(state.build()));
+        int open = -1;
+        for (i = 0; i < length; i++) {
+            if (input.charAt(i) != '*' || markers[i] != 0) continue;
+
+            if (open < 0) {
+                open = i;
+            } else if (i > open + 1) {
+                // Needs at least one character in between, otherwise the star is part of the text
+                markers[open] = ITALIC_OPEN;
+                markers[i] = ITALIC_CLOSE;
+                open = -1;
+            }
         }
 
-        return text;
+        return markers;
     }
 
-    // Converts *text* -> &otext&r and **text** -> &ltext&r
-    private static String processMarkdown(String input) {
-        // Process ** bold ** first so we don't confuse it with single *
-        input = input.replaceAll("\\*\\*(.+?)\\*\\*", "&l$1&r");
-        // Then process * italic *
-        input = input.replaceAll("\\*(.+?)\\*", "&o$1&r");
-        return input;
+    private static Formatting markerFormatting(byte marker) {
+        return switch (marker) {
+            case BOLD_OPEN -> Formatting.BOLD;
+            case ITALIC_OPEN -> Formatting.ITALIC;
+            default -> Formatting.RESET;
+        };
     }
 
-    private static String processGradients(String input) {
-        Matcher matcher = GRADIENT_PATTERN.matcher(input);
-        StringBuffer result = new StringBuffer();
-
-        while (matcher.find()) {
-            String startHex = matcher.group(1);
-            String endHex = matcher.group(2);
-            String text = matcher.group(3);
+    private static int markerLength(byte marker) {
+        return marker == BOLD_OPEN || marker == BOLD_CLOSE ? 2 : 1;
+    }
 
-            String gradientText = createGradient(text, startHex, endHex);
-            matcher.appendReplacement(result, Matcher.quoteReplacement(gradientText));
+    private static boolean isHex(String input, int from, int length) {
+        for (int i = from; i < from + length; i++) {
+            if (Character.digit(input.charAt(i), 16) < 0) return false;
         }
+        return true;
+    }
+
+    // Length of the & code at index i inside a gradient (8 for &#RRGGBB, 2 for &X), or 0 if there isn't one
+    private static int gradientCodeLength(String input, int i, int end) {
+        if (input.charAt(i) != '&' || i + 1 >= end) return 0;
+        char next = input.charAt(i + 1);
+        if (next == '#' && i + 7 < end) return 8;
+        return MAP.containsKey(Character.toLowerCase(next)) ? 2 : 0;
+    }
 
-        matcher.appendTail(result);
-        return result.toString();
+    // Blends each RGB channel from start to end, step out of steps
+    private static int interpolate(int startColor, int endColor, int step, int steps) {
+        if (steps <= 0) return startColor;
+
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int from = (startColor >> shift) & 0xFF;
+            int to = (endColor >> shift) & 0xFF;
+            rgb |= (from + Math.floorDiv((to - from) * step, steps)) << shift;
+        }
+        return rgb;
     }
 
-    private static String createGradient(String text, String startHex, String endHex) {
-        if (text.isEmpty()) return "";
-
-        int startColor = Integer.parseInt(startHex, 16);
-        int endColor = Integer.parseInt(endHex, 16);
-
-        int startR = (startColor >> 16) & 0xFF;
-        int startG = (startColor >> 8) & 0xFF;
-        int startB = startColor & 0xFF;
-
-        int endR = (endColor >> 16) & 0xFF;
-        int endG = (endColor >> 8) & 0xFF;
-        int endB = endColor & 0xFF;
-
-        // Collect only the printable characters (skip any & codes inside the gradient text)
-        // so we can calculate gradient ratio correctly
-        StringBuilder printableChars = new StringBuilder();
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            if (c == '&' && i + 1 < text.length()) {
-                char next = text.charAt(i + 1);
-                if (next == '#' && i + 7 < text.length()) {
-                    i += 7; // skip &#RRGGBB
+    /**
+     * Walks the message once, applying codes as it meets them, and collects
+     * consecutive characters with the same style into a single literal.
+     */
+    private static class Compiler {
+        private final boolean allowMagic;
+        private final MutableText text = Text.empty();
+        private final StyleState state = new StyleState();
+        private final StringBuilder run = new StringBuilder();
+        private Style runStyle = null;
+        private boolean styleChanged = true;
+
+        Compiler(boolean allowMagic) {
+            this.allowMagic = allowMagic;
+        }
+
+        void compile(String input, byte[] markers) {
+            int length = input.length();
+            int i = 0;
+
+            while (i < length) {
+                byte marker = markers == null ? 0 : markers[i];
+                if (marker != 0) {
+                    applyFormatting(markerFormatting(marker));
+                    i += markerLength(marker);
                     continue;
                 }
-                if (MAP.containsKey(Character.toLowerCase(next))) {
-                    i++; // skip &X
-                    continue;
+
+                char c = input.charAt(i);
+
+                if (c == '&' && i + 1 < length) {
+                    // Gradient: &gradient{RRGGBB-RRGGBB}text
+                    int gradientEnd = compileGradient(input, markers, i);
+                    if (gradientEnd > i) {
+                        i = gradientEnd;
+                        continue;
+                    }
+
+                    char next = input.charAt(i + 1);
+
+                    // Hex color code: &#RRGGBB
+                    if (next == '#' && i + 7 < length && isHex(input, i + 2, 6)) {
+                        setColor(TextColor.fromRgb(Integer.parseInt(input, i + 2, i + 8, 16)));
+                        i += 8;
+                        continue;
+                    }
+
+                    // Standard formatting/color code
+                    Formatting f = MAP.get(Character.toLowerCase(next));
+                    if (f != null) {
+                        applyFormatting(f);
+                        i += 2;
+                        continue;
+                    }
                 }
+
+                append(c);
+                i++;
             }
-            printableChars.append(c);
         }
 
-        int totalPrintable = printableChars.length();
-        int printableIndex = 0;
+        /**
+         * Compiles the gradient starting at start and returns the index just past it,
+         * or -1 if there is no valid gradient there. The gradient text runs up to the
+         * next formatting code, but always takes at least its first token.
+         */
+        private int compileGradient(String input, byte[] markers, int start) {
+            int length = input.length();
+            int textStart = start + GRADIENT_HEADER_LENGTH;
+            if (textStart >= length || !input.startsWith(GRADIENT_PREFIX, start)) return -1;
+
+            int hexStart = start + GRADIENT_PREFIX.length();
+            if (!isHex(input, hexStart, 6) || input.charAt(hexStart + 6) != '-'
+                    || !isHex(input, hexStart + 7, 6) || input.charAt(hexStart + 13) != '}') {
+                return -1;
+            }
 
-        StringBuilder result = new StringBuilder();
+            byte firstMarker = markers == null ? 0 : markers[textStart];
+            int textEnd = textStart + (firstMarker != 0 ? markerLength(firstMarker) : 1);
+            while (textEnd < length) {
+                if (markers != null && markers[textEnd] != 0) break;
+                if (input.charAt(textEnd) == '&' && (textEnd + 1 >= length || input.charAt(textEnd + 1) != '#')) break;
+                textEnd++;
+            }
 
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
+            int startColor = Integer.parseInt(input, hexStart, hexStart + 6, 16);
+            int endColor = Integer.parseInt(input, hexStart + 7, hexStart + 13, 16);
 
-            // Pass through any & formatting codes untouched
-            if (c == '&' && i + 1 < text.length()) {
-                char next = text.charAt(i + 1);
-                if (next == '#' && i + 7 < text.length()) {
-                    // This is a hex code inside gradient — skip it, gradient owns the color
-                    i += 7;
-                    continue;
+            // A markdown delimiter right after the header belongs to the gradient
+            int from = textStart;
+            if (firstMarker != 0) {
+                applyGradientFormatting(markerFormatting(firstMarker));
+                from += markerLength(firstMarker);
+            }
+
+            int totalPrintable = 0;
+            for (int i = from; i < textEnd; i++) {
+                int codeLength = gradientCodeLength(input, i, textEnd);
+                if (codeLength > 0) {
+                    i += codeLength - 1;
+                } else {
+                    totalPrintable++;
                 }
-                if (MAP.containsKey(Character.toLowerCase(next))) {
-                    Formatting f = MAP.get(Character.toLowerCase(next));
-                    // Only pass through non-color formatting codes (bold, italic, etc.)
-                    if (!f.isColor() && f != Formatting.RESET) {
-                        result.append('&').append(next);
+            }
+
+            int printableIndex = 0;
+            for (int i = from; i < textEnd; i++) {
+                int codeLength = gradientCodeLength(input, i, textEnd);
+                if (codeLength > 0) {
+                    // Hex codes are dropped, the gradient owns the color
+                    if (codeLength == 2) {
+                        applyGradientFormatting(MAP.get(Character.toLowerCase(input.charAt(i + 1))));
                     }
-                    i++;
+                    i += codeLength - 1;
                     continue;
                 }
-            }
 
-            if (c == ' ') {
-                result.append(' ');
+                char c = input.charAt(i);
+                if (c != ' ') {
+                    setColor(TextColor.fromRgb(interpolate(startColor, endColor, printableIndex, totalPrintable - 1)));
+                }
+                append(c);
                 printableIndex++;
-                continue;
             }
 
-            float ratio = totalPrintable <= 1 ? 0 : (float) printableIndex / (totalPrintable - 1);
+            return textEnd;
+        }
+
+        // Only non-color formatting (bold, italic, ...) can be used inside a gradient
+        private void applyGradientFormatting(Formatting f) {
+            if (!f.isColor() && f != Formatting.RESET) {
+                applyFormatting(f);
+            }
+        }
 
-            int r = (int) (startR + ratio * (endR - startR));
-            int g = (int) (startG + ratio * (endG - startG));
-            int b = (int) (startB + ratio * (endB - startB));
+        private void applyFormatting(Formatting f) {
+            if (!allowMagic && f == Formatting.OBFUSCATED) return;
+            state.applyFormatting(f);
+            styleChanged = true;
+        }
 
-            result.append(String.format("&#%02X%02X%02X%c", r, g, b, c));
-            printableIndex++;
+        private void setColor(TextColor color) {
+            state.color = color;
+            styleChanged = true;
         }
 
-        return result.toString();
+        private void append(char c) {
+            if (styleChanged) {
+                Style style = state.build();
+                if (!style.equals(runStyle)) {
+                    flush();
+                    runStyle = style;
+                }
+                styleChanged = false;
+            }
+            run.append(c);
+        }
+
+        private void flush() {
+            if (run.length() == 0) return;
+            text.append(Text.literal(run.toString()).setStyle(runStyle));
+            run.setLength(0);
+        }
+
+        MutableText finish() {
+            flush();
+            return text;
+        }
     }
 
     public static MutableText parseForPlayer(String input, ServerPlayerEntity player) {
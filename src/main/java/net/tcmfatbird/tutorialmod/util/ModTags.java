@@ -9,6 +9,8 @@ import net.minecraft.util.Identifier;
 
 public class ModTags {
     public static class Blocks {
+        public static final TagKey<Block> RADIATION_SHIELDING = createTag("radiation_shielding");
+        public static final TagKey<Block> LOCATOR_TRACKED = createTag("locator_tracked");
 
         private static TagKey<Block> createTag(String name) {
             return TagKey.of(RegistryKeys.BLOCK, Identifier.of(TutorialMod.MOD_ID, name));